@@ -0,0 +1,164 @@
+package bot4;
+
+import battlecode.common.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import testworld.SimRobot;
+import testworld.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of bot4's hottest computations, run against the test world with 0 to 50 robots in
+ * view. Calls that go through the RobotController pay for the test world's bookkeeping as well,
+ * so compare these numbers between commits rather than reading them as bytecode counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+    static final int MAP_SIZE = 60;
+    static final MapLocation CENTER = new MapLocation(MAP_SIZE / 2, MAP_SIZE / 2);
+    static final RobotType[] ENEMY_TYPES = {
+        RobotType.SOLDIER, RobotType.MINER, RobotType.SAGE, RobotType.WATCHTOWER, RobotType.BUILDER
+    };
+
+    /**
+     * Puts count robots of team on different random tiles that the robot at CENTER can see.
+     * The same seed as the bots keeps every fixture the same from run to run.
+     */
+    static RobotInfo[] surround(World world, SimRobot center, Team team, int count, RobotType onlyType) {
+        List<MapLocation> free = new ArrayList<>();
+        int vision = center.type.visionRadiusSquared;
+        for (int x = 0; x < MAP_SIZE; x++) {
+            for (int y = 0; y < MAP_SIZE; y++) {
+                MapLocation loc = new MapLocation(x, y);
+                if (!loc.equals(CENTER) && CENTER.distanceSquaredTo(loc) <= vision) {
+                    free.add(loc);
+                }
+            }
+        }
+
+        Random rng = new Random(6147);
+        RobotInfo[] robots = new RobotInfo[count];
+        for (int i = 0; i < count; i++) {
+            MapLocation loc = free.remove(rng.nextInt(free.size()));
+            RobotType type = onlyType != null ? onlyType : ENEMY_TYPES[rng.nextInt(ENEMY_TYPES.length)];
+            SimRobot robot = world.addRobot(type, team, loc.x, loc.y);
+            robot.health = 1 + rng.nextInt(robot.health);
+            world.setRubble(loc.x, loc.y, rng.nextInt(60));
+            robots[i] = robot.toRobotInfo();
+        }
+        return robots;
+    }
+
+    @State(Scope.Thread)
+    public static class Fight {
+        @Param({"0", "5", "15", "30", "50"})
+        public int enemies;
+
+        RobotController soldier;
+        RobotInfo[] enemyInfos;
+
+        @Setup
+        public void setUp() {
+            World world = new World(MAP_SIZE, MAP_SIZE);
+            SimRobot me = world.addRobot(RobotType.SOLDIER, Team.A, CENTER.x, CENTER.y);
+            soldier = world.controller(me);
+            enemyInfos = surround(world, me, Team.B, enemies, null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Siege {
+        @Param({"0", "5", "15", "30", "50"})
+        public int enemies;
+
+        RobotController archon;
+
+        @Setup
+        public void setUp() throws GameActionException {
+            RobotPlayer.myArchonIndex = -1;
+            World world = new World(MAP_SIZE, MAP_SIZE);
+            SimRobot me = world.addRobot(RobotType.ARCHON, Team.A, CENTER.x, CENTER.y);
+            archon = world.controller(me);
+            surround(world, me, Team.B, enemies, null);
+            RobotPlayer.putArchonLocationInComms(archon);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Crowd {
+        @Param({"0", "5", "15", "30", "50"})
+        public int friends;
+
+        RobotController miner;
+
+        @Setup
+        public void setUp() {
+            World world = new World(MAP_SIZE, MAP_SIZE);
+            SimRobot me = world.addRobot(RobotType.MINER, Team.A, CENTER.x, CENTER.y);
+            miner = world.controller(me);
+            surround(world, me, Team.A, friends, RobotType.MINER);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Comms {
+        RobotController rc;
+        MapLocation[] locs = new MapLocation[GameConstants.SHARED_ARRAY_LENGTH];
+
+        @Setup
+        public void setUp() {
+            World world = new World(MAP_SIZE, MAP_SIZE);
+            rc = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 0, 0));
+            Random rng = new Random(6147);
+            for (int i = 0; i < locs.length; i++) {
+                locs[i] = new MapLocation(rng.nextInt(MAP_SIZE), rng.nextInt(MAP_SIZE));
+            }
+        }
+    }
+
+    @Benchmark
+    public void commsEncodeDecode(Comms state, Blackhole blackhole) throws GameActionException {
+        for (int i = 0; i < state.locs.length; i++) {
+            RobotPlayer.writeLocationAndIntToIndex(state.rc, i, state.locs[i], i % 6);
+        }
+        for (int i = 0; i < state.locs.length; i++) {
+            blackhole.consume(RobotPlayer.getLocationFromIndex(state.rc, i));
+            blackhole.consume(RobotPlayer.getIntFromIndex(state.rc, i));
+        }
+    }
+
+    @Benchmark
+    public int attackScores(Fight state) {
+        int best = Integer.MIN_VALUE;
+        int damage = RobotType.SOLDIER.damage;
+        for (RobotInfo enemy : state.enemyInfos) {
+            best = Math.max(best, RobotPlayer.getAttackScore(enemy, damage, 0));
+        }
+        return best;
+    }
+
+    @Benchmark
+    public RobotInfo bestAttackTarget(Fight state) throws GameActionException {
+        return RobotPlayer.getBestAttackTarget(state.soldier, state.enemyInfos);
+    }
+
+    @Benchmark
+    public boolean defendIfEnemies(Siege state) throws GameActionException {
+        // The archon has no lead, so it classifies the threat and writes comms without building
+        return RobotPlayer.defendIfEnemies(state.archon);
+    }
+
+    @Benchmark
+    public Direction checkClumped(Crowd state) throws GameActionException {
+        return RobotPlayer.checkClumped(state.miner);
+    }
+}
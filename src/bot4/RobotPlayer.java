@@ -2,8 +2,6 @@ package bot4;
 
 import battlecode.common.*;
 
-import java.util.PriorityQueue;
-import java.util.Comparator;
 import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
@@ -24,34 +22,153 @@ public strictfp class RobotPlayer {
     static int turnCount = 0;
 
     // Archon variables
-    static boolean builtBuilder = false;
-    static int startingMiners = 5;
-    static int currMiners = 0;
-    static int surroundingSoldiers = 2;
-    static boolean builtLab = false;
-    static int startingMIners2 = 10;
+    static final int STARTING_MINERS = 5;
+    static final int MAX_BUILDERS = 1;
+    static final int EARLY_PHASE_END_ROUND = 100;
+    static final int LATE_PHASE_START_ROUND = 1200;
+    static final int ARCHON_RELOCATE_CHECK_INTERVAL = 50;
+    static final int ARCHON_RELOCATE_RADIUS = 13;
+    static final int ARCHON_RELOCATE_MIN_GAIN = 1000;
+    static final int ARCHON_RELOCATE_MAX_STUCK_TURNS = 5;
+    static final int ARCHON_RELOCATE_MAX_TURNS = 30;
+
+    // Laboratory and builder constants and variables
+    static final int LAB_ARCHON_MAX_DIST = 34;
+    static final int LAB_THREAT_MAX_DIST = 400;
+    static final int LAB_LEAD_RESERVE_PER_RATE = 10;
+    static final int LAB_FORECAST_ROUNDS = 10;
+    static final int BUILDER_TASK_ARRIVED_DIST = 20;
+    static final int LEAD_FARM_START_ROUND = 1500;
+    static final int LEAD_FARM_POST_INTERVAL = 50;
+    static final int LEAD_FARM_BUILDERS = 3;
+    // One full-health soldier is threat level 7, so this is about four soldiers
+    static final int WATCHTOWER_THREAT_LEVEL = 25;
+    static final int MAX_BUILDING_LEVEL = 3;
+    static final int MUTATE_LEAD_RESERVE = 150;
+    static MapLocation buildSite = null;
+    static int myArchonIndex = -1;
+    static MapLocation archonDestination = null;
+    static int archonStuckTurns = 0;
+    static int archonRelocateTurns = 0;
+
+    // Production planner. Units this archon built, and the target ratio of miners, soldiers and
+    // builders in each phase of the game, in the order of plannedTypes.
+    static final RobotType[] plannedTypes = {RobotType.MINER, RobotType.SOLDIER, RobotType.BUILDER};
+    static final int[] unitsBuilt = new int[3];
+    static final int[] earlyPhaseRatio = {3, 1, 0};
+    static final int[] midPhaseRatio = {2, 4, 1};
+    static final int[] latePhaseRatio = {1, 6, 1};
+    static final int[] planDeficits = new int[3];
     static final int NUM_SOLDIERS_FOR_VIOLENT_ENEMY = 5;
     static final int NUM_SOLDIERS_FOR_PEACEFUL_ENEMY = 3;
+    static final int THREAT_QUANTUM = 25;
+    static final int THREAT_MAX_LEVEL = 99;
 
     // Comms Array Indices
     static final int ARCHON_LOCATION_START_INDEX = 0;
     static final int LEAD_FARM_START_INDEX = ARCHON_LOCATION_START_INDEX + 4;
-    static final int COMMS_ARRAY_PRINT_UP_TO = 12;
+    static final int FOCUS_FIRE_START_INDEX = LEAD_FARM_START_INDEX + 8;
+    static final int FOCUS_FIRE_SECTORS_PER_SIDE = 3;
+    static final int FOCUS_FIRE_END_INDEX = FOCUS_FIRE_START_INDEX + 2 * FOCUS_FIRE_SECTORS_PER_SIDE * FOCUS_FIRE_SECTORS_PER_SIDE;
+    static final int ARCHON_THREAT_START_INDEX = FOCUS_FIRE_END_INDEX;
+    static final int INCOME_START_INDEX = ARCHON_THREAT_START_INDEX + 4;
+    static final int INCOME_ROUND_INDEX = INCOME_START_INDEX;
+    static final int INCOME_LAST_LEAD_INDEX = INCOME_START_INDEX + 1;
+    static final int INCOME_SPENT_LEAD_INDEX = INCOME_START_INDEX + 2;
+    static final int INCOME_LEAD_RATE_INDEX = INCOME_START_INDEX + 3;
+    static final int SPEND_LEAD_RATE_INDEX = INCOME_START_INDEX + 4;
+    static final int INCOME_END_INDEX = INCOME_START_INDEX + 5;
+    static final int BUILDER_TASK_START_INDEX = INCOME_END_INDEX;
+    static final int BUILDER_TASK_END_INDEX = BUILDER_TASK_START_INDEX + 6;
+    static final int COMMS_ARRAY_PRINT_UP_TO = BUILDER_TASK_END_INDEX;
 
     // Comms Array Int Values
     static final MapLocation NO_INFO = new MapLocation(0, 0);
     static final int OUR_ARCHON_IS_SAFE = 0;
 
+    // Builder task types, stored as the int with each task's location. Lower is more important.
+    static final int BUILDER_TASK_REPAIR = 1;
+    static final int BUILDER_TASK_WATCHTOWER = 2;
+    static final int BUILDER_TASK_LAB = 3;
+    static final int BUILDER_TASK_MUTATE = 4;
+    static final int BUILDER_TASK_LEAD_FARM = 5;
+
+    // Lead income and spending rates are stored in comms in sixteenths of lead per round, smoothed
+    // over about INCOME_SMOOTHING_ROUNDS rounds
+    static final int INCOME_RATE_SCALE = 16;
+    static final int INCOME_SMOOTHING_ROUNDS = 8;
+
     // Miner constants
     static final int MINIMUM_LEAD = 1;
     static final int MINER_CLUMPED_NUM = 1;
     static final int TOO_MUCH_RUBBLE = 17;
+    static final int MINER_MAX_KNOWN_TILES = 24;
+    static final int MINER_HOME_RADIUS = 53;
+    static final int MINER_MIN_HOME_TILES = 3;
+
+    // Miner variables. Every lead tile the miner has seen, with the lead it had and when we saw it.
+    static final MapLocation[] knownLeadLocs = new MapLocation[MINER_MAX_KNOWN_TILES];
+    static final int[] knownLeadAmounts = new int[MINER_MAX_KNOWN_TILES];
+    static final int[] knownLeadRounds = new int[MINER_MAX_KNOWN_TILES];
+    static int numKnownLeadTiles = 0;
+    // One more than the index in knownLeadLocs of each tile, by x * MAP_MAX_HEIGHT + y. Only miners
+    // need it, so runMiner makes it on the first turn rather than every robot paying for it.
+    static int[] knownLeadSlots = null;
+    static int nextEvictedLeadTile = 0;
+    static MapLocation minerHome = null;
 
     // Soldier constants
     static final int SOLDIER_MINER_MIN_DIST = 3;
     static final int SOLDIER_MINER_MAX_DIST = 8;
     static final int SHIELD_ARCHON_MAX_DISTANCE = 18;
     static final int SOLDIER_CLUMPED_NUM = 4;
+    static final int ATTACK_SCORE_KILL_BONUS = 1000000;
+    static final int ATTACK_SCORE_FOCUS_BONUS = 100000;
+    static final int FOCUS_FIRE_STAMP_ROUNDS = 5;
+    static final int SOLDIER_RETREAT_HEALTH_PERCENT = 40;
+    static final int SOLDIER_HEALED_HEALTH_PERCENT = 90;
+    static final int SOLDIER_RETURNED_DIST = 8;
+
+    // Soldier variables
+    static boolean retreating = false;
+    static MapLocation soldierObjective = null;
+    static final MapLocation[] deadArchonLocations = new MapLocation[4];
+
+    // Sage constants
+    static final int SAGE_APPROACH_COOLDOWN_TURNS = 20;
+
+    // Watchtower constants
+    static final int WATCHTOWER_THREAT_MAX_DIST = 200;
+    static final int WATCHTOWER_SETTLE_DIST = 8;
+
+    // Watchtower variables
+    static MapLocation watchtowerDestination = null;
+
+    // Soldier micro constants and preallocated buffers. The enemy and ally caps keep a micro turn
+    // under a fixed bytecode ceiling no matter how many robots are visible.
+    static final int MICRO_MAX_ENEMIES = 15;
+    static final int MICRO_MAX_ALLIES = 8;
+    // Added to a non-attacker's distance when picking enemies, which is more than any distance in vision
+    static final int MICRO_NON_ATTACKER_RANK = 1000;
+    static final int MICRO_ALLY_SUPPORT_DIST = 8;
+    static final Direction[] microDirections = {
+            Direction.CENTER,
+            Direction.NORTH,
+            Direction.NORTHEAST,
+            Direction.EAST,
+            Direction.SOUTHEAST,
+            Direction.SOUTH,
+            Direction.SOUTHWEST,
+            Direction.WEST,
+            Direction.NORTHWEST,
+    };
+    static final boolean[] microCanMove = new boolean[9];
+    static final int[] microThreats = new int[9];
+    static final int[] microTargets = new int[9];
+    static final int[] microCooldown = new int[9];
+    static final int[] microAllyDist = new int[9];
+    static final RobotInfo[] microEnemies = new RobotInfo[MICRO_MAX_ENEMIES];
+    static final int[] microEnemyRanks = new int[MICRO_MAX_ENEMIES];
 
     /**
      * A random number generator.
@@ -103,9 +220,9 @@ public strictfp class RobotPlayer {
                     case MINER:      runMiner(rc);   break;
                     case SOLDIER:    runSoldier(rc); break;
                     case LABORATORY: runLaboratory(rc); break;
-                    case WATCHTOWER:
+                    case WATCHTOWER: runWatchtower(rc); break;
                     case BUILDER:    runBuilder(rc); break;
-                    case SAGE:       break;
+                    case SAGE:       runSage(rc);    break;
                 }
             } catch (GameActionException e) {
                 // Oh no! It looks like we did something illegal in the Battlecode world. You should
@@ -199,415 +316,1370 @@ public strictfp class RobotPlayer {
     }
 
     /**
-     * Run a single turn for an Archon.
-     * This code is wrapped inside the infinite loop in run(), so it is called once per turn.
+     * Returns the index in the comms array of the focus fire slot for the sector containing loc.
+     * Each sector has two consecutive indices: the target's ID at the returned index, then the
+     * target's location and a round stamp at the next index.
+     * @param rc any RobotController that can access comms array
+     * @param loc a MapLocation in the sector
+     * @return the index of the target ID of the sector's focus fire slot
      */
-    static void runLaboratory(RobotController rc) throws GameActionException {
-        if (rc.canTransmute()) {
-            rc.transmute();
-        }
+    static int getFocusFireIndex(RobotController rc, MapLocation loc) {
+        int sectorX = loc.x * FOCUS_FIRE_SECTORS_PER_SIDE / rc.getMapWidth();
+        int sectorY = loc.y * FOCUS_FIRE_SECTORS_PER_SIDE / rc.getMapHeight();
+        return FOCUS_FIRE_START_INDEX + 2 * (sectorX * FOCUS_FIRE_SECTORS_PER_SIDE + sectorY);
     }
 
-    static void runBuilder(RobotController rc) throws GameActionException {
-        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
-        Direction dir = center.directionTo(rc.getLocation());
-        if(!builtLab) {
-            if (!rc.onTheMap(rc.adjacentLocation(dir))) {
-                for (Direction buildLabDir: Direction.allDirections()) {
-                    if (rc.canBuildRobot(RobotType.LABORATORY, buildLabDir)) {
-                        rc.buildRobot(RobotType.LABORATORY, buildLabDir);
-                        builtLab = true;
-                    }
-                }
-            }
-            while (rc.onTheMap(rc.adjacentLocation(dir)) && rc.canMove(dir)) {
-                rc.move(dir);
-            }
+    /**
+     * Returns the round stamp written with focus fire targets. Stamps only have room for values up
+     * to 5, so they wrap around every 6 * FOCUS_FIRE_STAMP_ROUNDS rounds.
+     * @param rc any RobotController
+     * @return the current round stamp
+     */
+    static int getFocusFireStamp(RobotController rc) {
+        return (rc.getRoundNum() / FOCUS_FIRE_STAMP_ROUNDS) % 6;
+    }
+
+    /**
+     * Returns the ID of the shared focus fire target for rc's sector, or 0 if there is none. Clears
+     * the slot if the target timed out, or if rc can see where the target was but it is gone.
+     * @param rc any RobotController that can access comms array
+     * @return the ID of the focus fire target
+     * @throws GameActionException
+     */
+    static int readFocusFireTarget(RobotController rc) throws GameActionException {
+        int index = getFocusFireIndex(rc, rc.getLocation());
+        int targetID = rc.readSharedArray(index);
+        if (targetID == 0) {
+            return 0;
         }
-        else {
-            boolean canRepairLab = false;
-            RobotInfo lab = null;
-            RobotInfo[] friendsVisible = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam());
-            for (RobotInfo friend : friendsVisible) {
-                if (friend.getHealth() != friend.getType().health) {
-                    if (friend.getType() == RobotType.LABORATORY && rc.canRepair(friend.getLocation())) {
-                        lab = friend;
-                        canRepairLab = true;
-                    }
-                }
-            }
-            if (canRepairLab) {
-                rc.repair(lab.getLocation());
-            }
-        }
-//            else {
-//                for (RobotInfo friend : friendsVisible) {
-//                    if (friend.getHealth() != friend.getType().health) {
-//                        if(friend.getType() == RobotType.LABORATORY && rc.canRepair(friend.getLocation())) {
-//                            System.out.println("HERE");
-//                            lab = friend;
-//                            canRepairLab = true;
-//                        }
-////                    if (rc.canRepair(friend.getLocation())) {
-////                        // Repair if possible
-////                        rc.repair(friend.getLocation());
-////                    }
-//                    }
-//                }
-//                // If nobody to repair, run default move
-//                Direction defaultDir = getDefaultDirection(rc);
-//                if (rc.canMove(defaultDir)) {
-//                    rc.move(defaultDir);
-//                }
-//            }
-//        }
-    }
-
-    /**
-     * Puts the location for rc in the comms array if it isn't already there.
-     * @param rc the RobotController whose location should be put in comms
+
+        int age = (getFocusFireStamp(rc) - getIntFromIndex(rc, index + 1) + 6) % 6;
+        MapLocation targetLoc = getLocationFromIndex(rc, index + 1);
+        if (age > 1 || (rc.canSenseLocation(targetLoc) && !rc.canSenseRobot(targetID))) {
+            // The target timed out or died, so free the slot for the next engagement
+            rc.writeSharedArray(index, 0);
+            rc.writeSharedArray(index + 1, 0);
+            return 0;
+        }
+
+        return targetID;
+    }
+
+    /**
+     * Publishes target as the focus fire target for rc's sector if the slot is free or already holds
+     * target, refreshing its location and round stamp. Clears the slot instead if we killed target.
+     * @param rc any RobotController that can access comms array
+     * @param target the enemy rc just attacked
+     * @param killed whether our attack killed target
      * @throws GameActionException
-     *
      */
-    static void putArchonLocationInComms(RobotController rc) throws GameActionException {
-        int index = ARCHON_LOCATION_START_INDEX;
-        MapLocation currLoc = rc.getLocation();
-        while (rc.readSharedArray(index) != 0) {
-            if (getLocationFromIndex(rc, index).equals(currLoc)) {
-                // This rc's location is already in the comms array
-                return;
-            }
-            index++;
+    static void shareFocusFireTarget(RobotController rc, RobotInfo target, boolean killed) throws GameActionException {
+        int index = getFocusFireIndex(rc, rc.getLocation());
+        int targetID = rc.readSharedArray(index);
+        if (targetID != 0 && targetID != target.getID()) {
+            // Another engagement owns this sector's slot
+            return;
         }
 
-        // Add this rc's location to the comms array at the next available index
-        writeLocationAndIntToIndex(rc, index, currLoc, OUR_ARCHON_IS_SAFE);
+        if (killed) {
+            rc.writeSharedArray(index, 0);
+            rc.writeSharedArray(index + 1, 0);
+        } else {
+            rc.writeSharedArray(index, target.getID());
+            writeLocationAndIntToIndex(rc, index + 1, target.getLocation(), getFocusFireStamp(rc));
+        }
     }
 
     /**
-     * Returns true if the Direction dir is towards an archon on our team, false otherwise.
-     * @param rc
-     * @param dir
+     * Returns the location of the nearest focus fire target in any sector that has not timed out,
+     * or null if no sector has an engagement going on.
+     * @param rc any RobotController that can access comms array
      * @return
      * @throws GameActionException
      */
-    static boolean directionIsTowardsFriendlyArchon(RobotController rc, Direction dir) throws GameActionException {
-        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
-            MapLocation currArchon = getLocationFromIndex(rc, i);
-            if (currArchon.equals(NO_INFO)) {
-                // We reached the end of the archons in comms array
-                break;
+    static MapLocation getNearestFocusFireLocation(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        int stamp = getFocusFireStamp(rc);
+        MapLocation nearest = null;
+        for (int index = FOCUS_FIRE_START_INDEX; index < FOCUS_FIRE_END_INDEX; index += 2) {
+            if (rc.readSharedArray(index) == 0 || (stamp - getIntFromIndex(rc, index + 1) + 6) % 6 > 1) {
+                continue;
             }
 
-            Direction toFriendlyArchon = rc.getLocation().directionTo(currArchon);
-            if (dir.dx == toFriendlyArchon.dx && dir.dy == toFriendlyArchon.dy) {
-                return true;
+            MapLocation targetLoc = getLocationFromIndex(rc, index + 1);
+            if (nearest == null || myLoc.distanceSquaredTo(targetLoc) < myLoc.distanceSquaredTo(nearest)) {
+                nearest = targetLoc;
             }
         }
-        return false;
+        return nearest;
     }
 
     /**
-     * Returns true if the Direction dir goes towards the center of the map in
-     * either x or y or both, false otherwise.
-     * @param rc
-     * @param dir
-     * @return
+     * Adds lead to what our team has spent since the income estimate was last updated, so the
+     * estimate can tell spending apart from a drop in income.
+     * @param rc any RobotController that can access comms array
+     * @param lead the lead spent
      * @throws GameActionException
      */
-    static boolean directionIsTowardsMapCenter(RobotController rc, Direction dir) throws GameActionException {
-        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
-        Direction toCenter = rc.getLocation().directionTo(center);
-        if (dir.dx * toCenter.dx >= 0 && dir.dy * toCenter.dy >= 0) {
-            // If the x and y component of dir go towards center, return true
-            return true;
+    static void recordSpending(RobotController rc, int lead) throws GameActionException {
+        if (lead > 0) {
+            int spent = rc.readSharedArray(INCOME_SPENT_LEAD_INDEX) + lead;
+            rc.writeSharedArray(INCOME_SPENT_LEAD_INDEX, Math.min(spent, GameConstants.MAX_SHARED_ARRAY_VALUE));
         }
-
-        return false;
     }
 
     /**
-     * Returns an array of Direction objects that represents all directions that are
-     * towards the center of the map and not towards a friendly archon.
-     * @param rc
-     * @return an array of Directions for rc to build in
+     * Builds a robot of the given type in dir and records its cost as spending.
+     * @param rc a RobotController that can build type in dir
+     * @param type
+     * @param dir
      * @throws GameActionException
      */
-    static List<Direction> getArchonBuildDir(RobotController rc) throws GameActionException {
-        List<Direction> allValidDir = new ArrayList<>();
-        for (Direction dir : directions) {
-            if (!directionIsTowardsFriendlyArchon(rc, dir) && directionIsTowardsMapCenter(rc, dir)) {
-                allValidDir.add(dir);
-            }
+    static void buildRobotAndRecord(RobotController rc, RobotType type, Direction dir) throws GameActionException {
+        rc.buildRobot(type, dir);
+        recordSpending(rc, type.buildCostLead);
+    }
+
+    /**
+     * Returns rate smoothed towards a new per-round sample, both in sixteenths of lead per round.
+     * A step too small to survive the division still moves the rate by one, so a steady income is
+     * eventually estimated exactly.
+     * @param rate the previous smoothed rate
+     * @param sample the new sample
+     * @return
+     */
+    static int smoothRate(int rate, int sample) {
+        int step = (sample - rate) / INCOME_SMOOTHING_ROUNDS;
+        if (step == 0) {
+            step = Integer.signum(sample - rate);
         }
-        return allValidDir;
+        return Math.max(0, Math.min(rate + step, GameConstants.MAX_SHARED_ARRAY_VALUE));
     }
 
     /**
-     * Causes rc to produce numSoldiers soldiers as close as possible to loc.
-     * @param rc, the RobotController of an archon
+     * Updates the team income estimate in comms once per round. The first archon to run in a round
+     * compares our banked lead against the previous round, adds back what was recorded as
+     * spent in between, and folds the result into the smoothed income and spending rates. Letting
+     * whichever archon runs first do this means the estimate survives any archon dying.
+     * @param rc the RobotController of an archon
      * @throws GameActionException
      */
-    static void makeSoldiersTowardsLocation(RobotController rc, MapLocation loc, int numSoldiers) throws GameActionException {
-        Direction toLoc = rc.getLocation().directionTo(loc);
-        if (rc.canBuildRobot(RobotType.SOLDIER, toLoc)) {
-            rc.buildRobot(RobotType.SOLDIER, toLoc);
+    static void updateIncomeEstimate(RobotController rc) throws GameActionException {
+        int round = rc.getRoundNum();
+        int lastRound = rc.readSharedArray(INCOME_ROUND_INDEX);
+        if (lastRound == round) {
+            // Another archon already updated the estimate this round
+            return;
         }
 
-        Direction toLocRight = rc.getLocation().directionTo(loc);
-        for (int i = 0; i < (numSoldiers - 1) / 2; i++) {
-            toLoc = toLoc.rotateLeft();
-            if (rc.canBuildRobot(RobotType.SOLDIER, toLoc)) {
-                rc.buildRobot(RobotType.SOLDIER, toLoc);
-            }
-
-            toLocRight = toLocRight.rotateRight();
-            if (rc.canBuildRobot(RobotType.SOLDIER, toLocRight)) {
-                rc.buildRobot(RobotType.SOLDIER, toLocRight);
-            }
+        int lead = Math.min(rc.getTeamLeadAmount(rc.getTeam()), GameConstants.MAX_SHARED_ARRAY_VALUE);
+        int spentLead = rc.readSharedArray(INCOME_SPENT_LEAD_INDEX);
+        if (lastRound != 0) {
+            // Scale before dividing so that income spread over several rounds isn't truncated
+            int rounds = round - lastRound;
+            int leadIncome = (lead - rc.readSharedArray(INCOME_LAST_LEAD_INDEX) + spentLead) * INCOME_RATE_SCALE / rounds;
+            rc.writeSharedArray(INCOME_LEAD_RATE_INDEX, smoothRate(rc.readSharedArray(INCOME_LEAD_RATE_INDEX), leadIncome));
+            rc.writeSharedArray(SPEND_LEAD_RATE_INDEX, smoothRate(rc.readSharedArray(SPEND_LEAD_RATE_INDEX), spentLead * INCOME_RATE_SCALE / rounds));
         }
+
+        rc.writeSharedArray(INCOME_ROUND_INDEX, round);
+        rc.writeSharedArray(INCOME_LAST_LEAD_INDEX, lead);
+        rc.writeSharedArray(INCOME_SPENT_LEAD_INDEX, 0);
     }
 
     /**
-     * Checks if enemies are near rc. If they are, produces a number of soldiers to attack them
-     * and returns true. If there are no enemies, returns false
-     * @param rc
+     * Returns the lead we expect our team to have banked in the given number of rounds, assuming
+     * income and spending keep their smoothed rates.
+     * @param rc any RobotController that can access comms array
+     * @param rounds how many rounds ahead to forecast
+     * @return
      * @throws GameActionException
      */
-    static boolean defendIfEnemies(RobotController rc) throws GameActionException {
-        MapLocation myLoc = rc.getLocation();
-        RobotInfo[] enemies = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam().opponent());
-        List<Direction> underAttackFrom = new ArrayList<>();
-        boolean sawEnemy = false;
-        for (RobotInfo enemy : enemies) {
-            RobotType type = enemy.getType();
-            if (type == RobotType.SOLDIER || type == RobotType.ARCHON || type == RobotType.SAGE || type == RobotType.WATCHTOWER) {
-                sawEnemy = true;
-                makeSoldiersTowardsLocation(rc, enemy.getLocation(), NUM_SOLDIERS_FOR_VIOLENT_ENEMY);
-                underAttackFrom.add(myLoc.directionTo(enemy.getLocation()));
-            } else if (type == RobotType.MINER || type == RobotType.BUILDER || type == RobotType.LABORATORY) {
-                sawEnemy = true;
-                makeSoldiersTowardsLocation(rc, enemy.getLocation(), NUM_SOLDIERS_FOR_PEACEFUL_ENEMY);
-                underAttackFrom.add(myLoc.directionTo(enemy.getLocation()));
-            }
-        }
-
-        if (sawEnemy) {
-            // Set the communications array to say our archon is in danger from a certain direction
-            int archonStatus;
-            if (underAttackFrom.size() > 1) {
-                // Under attack from multiple directions
-                archonStatus = 5;
-            } else {
-                Direction dir = underAttackFrom.get(0);
-                if (dir.equals(Direction.NORTH) || dir.equals(Direction.NORTHEAST)) {
-                    archonStatus = 1;
-                } else if (dir.equals(Direction.EAST) || dir.equals(Direction.SOUTHEAST)) {
-                    archonStatus = 2;
-                } else if (dir.equals(Direction.SOUTH) || dir.equals(Direction.SOUTHWEST)) {
-                    archonStatus = 3;
-                } else {
-                    archonStatus = 4;
-                }
-            }
-            writeIntToIndex(rc, getNearestArchonIndex(rc), archonStatus);
+    static int forecastLead(RobotController rc, int rounds) throws GameActionException {
+        int net = rc.readSharedArray(INCOME_LEAD_RATE_INDEX) - rc.readSharedArray(SPEND_LEAD_RATE_INDEX);
+        return Math.max(0, rc.getTeamLeadAmount(rc.getTeam()) + net * rounds / INCOME_RATE_SCALE);
+    }
 
-            // Make a miner to pick up the lead after we kill the enemy
-            RobotInfo[] friends = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam());
-            boolean haveMiner = false;
-            for (RobotInfo friend : friends) {
-                if (friend.getType() == RobotType.MINER) {
-                    haveMiner = true;
-                }
-            }
-            if (!haveMiner) {
-                for (Direction dir : directions) {
-                    if (rc.canBuildRobot(RobotType.MINER, dir)) {
-                        rc.buildRobot(RobotType.MINER, dir);
-                        break;
-                    }
-                }
-            }
+    /**
+     * Run a single turn for an Archon.
+     * This code is wrapped inside the infinite loop in run(), so it is called once per turn.
+     */
+    static void runLaboratory(RobotController rc) throws GameActionException {
+        if (rc.getHealth() < rc.getType().health) {
+            postBuilderTask(rc, BUILDER_TASK_REPAIR, rc.getLocation());
         }
 
-        return sawEnemy;
+        // Only convert lead we expect to have to spare, and demand more to spare the worse the rate
+        int rate = rc.getTransmutationRate();
+        int reserve = LAB_LEAD_RESERVE_PER_RATE * rate;
+        if (rc.canTransmute() && forecastLead(rc, LAB_FORECAST_ROUNDS) - rate >= reserve) {
+            recordSpending(rc, rate);
+            rc.transmute();
+        }
     }
 
     /**
-     * Causes the archon rc to repair all friendly units within range.
-     * @param rc
+     * Returns how good loc is for a laboratory. Rubble slows down every transmutation, so it counts
+     * the most. We also want to be far from the nearest threat (an engagement in comms, or the center
+     * of the map if there is none) without straying more than LAB_ARCHON_MAX_DIST from an archon.
+     * @param rc the RobotController of a builder
+     * @param loc the location to score
+     * @param threat the location enemies are expected to come from
+     * @param nearestArchon the location of our nearest archon
+     * @return the score of loc, higher is better
      * @throws GameActionException
      */
-    static void repairNearby(RobotController rc) throws GameActionException {
-        RobotInfo[] friends = rc.senseNearbyRobots(rc.getType().actionRadiusSquared, rc.getTeam());
-        for (RobotInfo friend : friends) {
-            if (rc.canRepair(friend.getLocation()) && friend.getHealth() != friend.getType().health) {
-                rc.repair(friend.getLocation());
-            }
+    static int getLabSiteScore(RobotController rc, MapLocation loc, MapLocation threat, MapLocation nearestArchon) throws GameActionException {
+        int score = -rc.senseRubble(loc) * 100 + Math.min(loc.distanceSquaredTo(threat), LAB_THREAT_MAX_DIST);
+        int archonDist = loc.distanceSquaredTo(nearestArchon);
+        if (archonDist > LAB_ARCHON_MAX_DIST) {
+            score -= (archonDist - LAB_ARCHON_MAX_DIST) * 10;
         }
+        return score;
     }
 
-    static void runArchon(RobotController rc) throws GameActionException {
-        // Put this archon's location in comms array if it isn't already
-        putArchonLocationInComms(rc);
-
-        // If we see enemies, produce soldiers and save resources
-        if (defendIfEnemies(rc)) {
-            return;
+    /**
+     * Returns the best empty location in the builder's vision to build a laboratory on according to
+     * getLabSiteScore, or null if there is none.
+     * @param rc the RobotController of a builder
+     * @return
+     * @throws GameActionException
+     */
+    static MapLocation getBestLabSite(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        MapLocation threat = getNearestFocusFireLocation(rc);
+        if (threat == null) {
+            threat = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
         }
+        MapLocation nearestArchon = getNearestArchon(rc);
 
-        // Repair anybody nearby
-        repairNearby(rc);
-
-        // Pick a direction to build in.
-        List<Direction> allValidDir = getArchonBuildDir(rc);
-        Direction dir = allValidDir.get(rng.nextInt(allValidDir.size()));
-
-        if (!builtBuilder && currMiners == startingMiners && isFurthestArchonFromCenter(rc)) {
-            MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
-            boolean buildBuilder = rc.canBuildRobot(RobotType.BUILDER, center.directionTo(rc.getLocation()));
-            if (buildBuilder) {
-                rc.buildRobot(RobotType.BUILDER, center.directionTo(rc.getLocation()));
-                builtBuilder = true;
+        MapLocation best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (MapLocation loc : rc.getAllLocationsWithinRadiusSquared(myLoc, rc.getType().visionRadiusSquared)) {
+            if (loc.equals(myLoc) || rc.isLocationOccupied(loc)) {
+                continue;
             }
-        }
-        else if (!builtBuilder && currMiners < startingMiners) {
-            boolean buildMiner = rc.canBuildRobot(RobotType.MINER, dir);
-            if(buildMiner) {
-                rc.buildRobot(RobotType.MINER, dir);
-                currMiners++;
+            int score = getLabSiteScore(rc, loc, threat, nearestArchon);
+            if (score > bestScore) {
+                best = loc;
+                bestScore = score;
             }
         }
-        else {
-            RobotInfo[] nearbyRobots = rc.senseNearbyRobots();
-            int soldiers = 0;
-            for (RobotInfo robot: nearbyRobots) {
-                if(rc.getTeam() == robot.team && robot.getType() == RobotType.SOLDIER ) {
-                    soldiers ++;
-                }
-            }
-            boolean builtSoldier = true;
-            if (soldiers < surroundingSoldiers) {
-                builtSoldier = false;
-                if (rc.canBuildRobot(RobotType.SOLDIER, dir)) {
-                    rc.buildRobot(RobotType.SOLDIER, dir);
-                    builtSoldier = true;
-                }
-            }
-            if (currMiners < startingMIners2 && builtSoldier && rng.nextInt(6) >= 5) {
-                // Let's try to build a miner.
-                if (rc.canBuildRobot(RobotType.MINER, dir)) {
-                    rc.buildRobot(RobotType.MINER, dir);
-                    currMiners ++;
-                }
-            }
-            else {
-                if(rng.nextInt(100) >= 99) {
-                    if (rc.canBuildRobot(RobotType.MINER, dir)) {
-                        rc.buildRobot(RobotType.MINER, dir);
-                        currMiners ++;
-                    }
+        return best;
+    }
+
+    /**
+     * Returns the best adjacent direction for rc to step towards target in: dir towards target or
+     * one rotation off it, whichever rc can move to and has the least rubble. Returns null if rc
+     * cannot move towards target.
+     * @param rc
+     * @param target
+     * @return
+     * @throws GameActionException
+     */
+    static Direction getLowRubbleDirTowards(RobotController rc, MapLocation target) throws GameActionException {
+        Direction toTarget = rc.getLocation().directionTo(target);
+        Direction[] choices = {toTarget, toTarget.rotateLeft(), toTarget.rotateRight()};
+        Direction best = null;
+        int minRubble = Integer.MAX_VALUE;
+        for (Direction choice : choices) {
+            if (rc.canMove(choice)) {
+                int rubble = rc.senseRubble(rc.adjacentLocation(choice));
+                if (rubble < minRubble) {
+                    best = choice;
+                    minRubble = rubble;
                 }
             }
         }
+        return best;
     }
 
     /**
-     * Returns true if this is our team's furthest archon from the center, false otherwise.
-     * Breaks ties by which archon has the lowest id (is earliest in the comms array and will
-     * produce troops first so will make gold fastest).
+     * Moves rc one step towards target through the least rubble it can, unless it is already there.
      * @param rc
-     * @return
+     * @param target
      * @throws GameActionException
      */
-    static boolean isFurthestArchonFromCenter(RobotController rc) throws GameActionException {
-        MapLocation center = new MapLocation(rc.getMapWidth(), rc.getMapHeight());
-        int myDistance = rc.getLocation().distanceSquaredTo(center);
-        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
-            MapLocation currArchon = getLocationFromIndex(rc, i);
-            if (currArchon.equals(NO_INFO)) {
-                // We reached the end of the archons in comms array
-                break;
+    static void moveTowardsLowRubble(RobotController rc, MapLocation target) throws GameActionException {
+        if (rc.getLocation().equals(target)) {
+            return;
+        }
+        Direction dir = getLowRubbleDirTowards(rc, target);
+        if (dir != null) {
+            rc.move(dir);
+        }
+    }
+
+    /**
+     * Posts a builder task of the given type at loc in the first free builder task slot, unless the
+     * same task is already posted. If every slot is taken, the task replaces the lowest priority
+     * task that is less important than it.
+     * @param rc any RobotController that can access comms array
+     * @param taskType one of the BUILDER_TASK_ types
+     * @param loc where the task should be done
+     * @throws GameActionException
+     */
+    static void postBuilderTask(RobotController rc, int taskType, MapLocation loc) throws GameActionException {
+        int freeIndex = -1;
+        int leastImportantIndex = -1;
+        for (int i = BUILDER_TASK_START_INDEX; i < BUILDER_TASK_END_INDEX; i++) {
+            if (rc.readSharedArray(i) == 0) {
+                if (freeIndex == -1) {
+                    freeIndex = i;
+                }
+                continue;
             }
 
-            if (currArchon.distanceSquaredTo(center) > myDistance) {
-                // There is an archon further than us
-                return false;
-            } else if (currArchon.distanceSquaredTo(center) == myDistance) {
-                // Either this is us, or there is another archon of equal distance. If this is a
-                // different archon, we are not the closest as ties are broken by which is earlier
-                // in the comms array.
-                return currArchon.equals(rc.getLocation());
+            int currType = getIntFromIndex(rc, i);
+            if (currType == taskType && getLocationFromIndex(rc, i).equals(loc)) {
+                // This task is already posted
+                return;
+            }
+            if (leastImportantIndex == -1 || currType > getIntFromIndex(rc, leastImportantIndex)) {
+                leastImportantIndex = i;
             }
         }
 
-        return true;
+        if (freeIndex != -1) {
+            writeLocationAndIntToIndex(rc, freeIndex, loc, taskType);
+        } else if (getIntFromIndex(rc, leastImportantIndex) > taskType) {
+            writeLocationAndIntToIndex(rc, leastImportantIndex, loc, taskType);
+        }
     }
 
     /**
-     * Returns the MapLocation of the nearest archon to rc.
-     * @param rc
+     * Returns the index in the comms array of the task rc should work on: the most important posted
+     * task, breaking ties by distance. Lead farm tasks are only taken once LEAD_FARM_START_ROUND has
+     * passed. Returns -1 if there is nothing to do.
+     * @param rc the RobotController of a builder
      * @return
      * @throws GameActionException
      */
-    static MapLocation getNearestArchon(RobotController rc) throws GameActionException {
+    static int getBuilderTaskIndex(RobotController rc) throws GameActionException {
         MapLocation myLoc = rc.getLocation();
-        MapLocation nearestArchon = getLocationFromIndex(rc, ARCHON_LOCATION_START_INDEX);
-        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
-            MapLocation currArchon = getLocationFromIndex(rc, i);
-            if (currArchon.equals(NO_INFO)) {
-                // We reached the end of the archons in comms array
-                break;
+        int bestIndex = -1;
+        int bestType = Integer.MAX_VALUE;
+        int bestDist = Integer.MAX_VALUE;
+        for (int i = BUILDER_TASK_START_INDEX; i < BUILDER_TASK_END_INDEX; i++) {
+            if (rc.readSharedArray(i) == 0) {
+                continue;
             }
-            if (myLoc.distanceSquaredTo(currArchon) < myLoc.distanceSquaredTo(nearestArchon)) {
-                nearestArchon = currArchon;
+            int taskType = getIntFromIndex(rc, i);
+            if (taskType == BUILDER_TASK_LEAD_FARM && rc.getRoundNum() < LEAD_FARM_START_ROUND) {
+                continue;
             }
-        }
 
-        return nearestArchon;
+            int dist = myLoc.distanceSquaredTo(getLocationFromIndex(rc, i));
+            if (taskType < bestType || (taskType == bestType && dist < bestDist)) {
+                bestIndex = i;
+                bestType = taskType;
+                bestDist = dist;
+            }
+        }
+        return bestIndex;
     }
 
     /**
-     * Returns the index in the communications array of the nearest archon to rc.
-     * @param rc
+     * Causes the builder at rc to repair the most damaged friendly building in its action radius.
+     * Returns true if it repaired something.
+     * @param rc the RobotController of a builder
      * @return
      * @throws GameActionException
      */
-    static int getNearestArchonIndex(RobotController rc) throws GameActionException {
-        MapLocation myLoc = rc.getLocation();
-        int nearestArchonIndex = ARCHON_LOCATION_START_INDEX;
-        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
-            MapLocation currArchon = getLocationFromIndex(rc, i);
-            if (currArchon.equals(NO_INFO)) {
-                // We reached the end of the archons in comms array
-                break;
-            }
+    static boolean repairNearbyBuildings(RobotController rc) throws GameActionException {
+        if (!rc.isActionReady()) {
+            return false;
+        }
 
-            MapLocation nearestArchon = getLocationFromIndex(rc, nearestArchonIndex);
-            if (myLoc.distanceSquaredTo(currArchon) < myLoc.distanceSquaredTo(nearestArchon)) {
-                nearestArchonIndex = i;
+        RobotInfo best = null;
+        int mostMissing = 0;
+        for (RobotInfo friend : rc.senseNearbyRobots(rc.getType().actionRadiusSquared, rc.getTeam())) {
+            int missingHealth = friend.getType().health - friend.getHealth();
+            if (friend.getType().isBuilding() && missingHealth > mostMissing) {
+                best = friend;
+                mostMissing = missingHealth;
             }
         }
 
-        return nearestArchonIndex;
+        if (best != null && rc.canRepair(best.getLocation())) {
+            rc.repair(best.getLocation());
+            return true;
+        }
+        return false;
     }
 
     /**
-     * If rc can see more than two friends of the same type, returns the direction away from the
-     * center of these friends. Else, returns null.
-     * @param rc
-     * @return
+     * Works on the repair task at index: walks to the building and repairs it, clearing the task once
+     * the building is back to full health or gone.
+     * @param rc the RobotController of a builder
+     * @param index the index of the task in the comms array
+     * @param loc the location of the building
      * @throws GameActionException
      */
-    static Direction checkClumped(RobotController rc) throws GameActionException {
-        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
-        int clumpAllowedDistance = (center.x / 2) * (center.x / 2);
-        if (rc.getLocation().distanceSquaredTo(center) > clumpAllowedDistance) {
-            // If we are far from the center, no need to prevent clumping
-            return null;
+    static void doRepairTask(RobotController rc, int index, MapLocation loc) throws GameActionException {
+        if (rc.canSenseLocation(loc)) {
+            RobotInfo building = rc.senseRobotAtLocation(loc);
+            if (building == null || building.getTeam() != rc.getTeam() || building.getHealth() >= building.getType().health) {
+                rc.writeSharedArray(index, 0);
+                return;
+            }
         }
 
-        RobotInfo[] friendsVisible = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam());
+        if (rc.getLocation().distanceSquaredTo(loc) > rc.getType().actionRadiusSquared) {
+            moveTowardsLowRubble(rc, loc);
+        }
+        if (rc.canRepair(loc)) {
+            rc.repair(loc);
+        }
+    }
+
+    /**
+     * Works on the task at index of building a robot of the given type. Labs go on the best site
+     * around the task location according to getBestLabSite. Watchtowers go between the threatened
+     * archon at the task location and the direction its threat comes from, or next to the archon
+     * when the threat comes from all sides. Clears the task once the building is placed, or when
+     * there is no free tile for a watchtower.
+     * @param rc the RobotController of a builder
+     * @param index the index of the task in the comms array
+     * @param loc the location of the task
+     * @param type LABORATORY or WATCHTOWER
+     * @throws GameActionException
+     */
+    static void doBuildTask(RobotController rc, int index, MapLocation loc, RobotType type) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        if (myLoc.distanceSquaredTo(loc) > BUILDER_TASK_ARRIVED_DIST) {
+            buildSite = null;
+            moveTowardsLowRubble(rc, loc);
+            return;
+        }
+
+        if (buildSite == null || rc.canSenseRobotAtLocation(buildSite)) {
+            // Pick a new site if we have none or someone is standing on ours
+            if (type == RobotType.LABORATORY) {
+                buildSite = getBestLabSite(rc);
+            } else {
+                Direction bearing = Direction.CENTER;
+                for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
+                    if (getLocationFromIndex(rc, i).equals(loc)) {
+                        bearing = getArchonThreatBearing(rc, i);
+                    }
+                }
+                // Threats from all sides cancel out to CENTER, which would put the site on the archon
+                buildSite = bearing == Direction.CENTER ? getLeastRubbleFreeTileAround(rc, loc)
+                                                        : loc.add(bearing).add(bearing);
+            }
+            if (buildSite == null) {
+                if (type == RobotType.WATCHTOWER) {
+                    // The archon is boxed in, so there is nowhere to put the watchtower
+                    rc.writeSharedArray(index, 0);
+                }
+                return;
+            }
+        }
+
+        if (myLoc.isAdjacentTo(buildSite)) {
+            if (rc.getTeamLeadAmount(rc.getTeam()) >= type.buildCostLead
+                    && buildRobotTowards(rc, type, myLoc.directionTo(buildSite))) {
+                rc.writeSharedArray(index, 0);
+                buildSite = null;
+            }
+        } else {
+            moveTowardsLowRubble(rc, buildSite);
+        }
+    }
+
+    /**
+     * Returns the unoccupied tile next to center that rc can sense with the least rubble, or null
+     * if there is none.
+     * @param rc
+     * @param center
+     * @return
+     * @throws GameActionException
+     */
+    static MapLocation getLeastRubbleFreeTileAround(RobotController rc, MapLocation center) throws GameActionException {
+        MapLocation best = null;
+        int minRubble = Integer.MAX_VALUE;
+        for (Direction dir : directions) {
+            MapLocation loc = center.add(dir);
+            if (rc.canSenseLocation(loc) && !rc.isLocationOccupied(loc) && rc.senseRubble(loc) < minRubble) {
+                best = loc;
+                minRubble = rc.senseRubble(loc);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Works on the mutate task at index: walks into action range of the building and mutates it to
+     * the next level, clearing the task once it is done or the building is gone or maxed out.
+     * @param rc the RobotController of a builder
+     * @param index the index of the task in the comms array
+     * @param loc the location of the building
+     * @throws GameActionException
+     */
+    static void doMutateTask(RobotController rc, int index, MapLocation loc) throws GameActionException {
+        if (rc.canSenseLocation(loc)) {
+            RobotInfo building = rc.senseRobotAtLocation(loc);
+            if (building == null || building.getTeam() != rc.getTeam() || !building.getType().isBuilding()
+                    || building.getLevel() >= MAX_BUILDING_LEVEL) {
+                rc.writeSharedArray(index, 0);
+                return;
+            }
+
+            if (rc.canMutate(loc)) {
+                RobotType type = building.getType();
+                int nextLevel = building.getLevel() + 1;
+                rc.mutate(loc);
+                recordSpending(rc, type.getLeadMutateCost(nextLevel));
+                rc.writeSharedArray(index, 0);
+                return;
+            }
+        }
+
+        if (rc.getLocation().distanceSquaredTo(loc) > rc.getType().actionRadiusSquared) {
+            moveTowardsLowRubble(rc, loc);
+        }
+    }
+
+    /**
+     * Works on the lead farm task at index: walks to the task location and disintegrates on a tile
+     * with no lead, leaving behind lead that will regenerate for the rest of the game.
+     * @param rc the RobotController of a builder
+     * @param index the index of the task in the comms array
+     * @param loc the location of the task
+     * @throws GameActionException
+     */
+    static void doLeadFarmTask(RobotController rc, int index, MapLocation loc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        if (myLoc.distanceSquaredTo(loc) > BUILDER_TASK_ARRIVED_DIST) {
+            moveTowardsLowRubble(rc, loc);
+            return;
+        }
+
+        if (rc.senseLead(myLoc) == 0) {
+            rc.writeSharedArray(index, 0);
+            rc.disintegrate();
+            return;
+        }
+
+        // Look for an empty tile next to us to farm on
+        for (Direction dir : directions) {
+            MapLocation adjacent = rc.adjacentLocation(dir);
+            if (rc.canMove(dir) && rc.senseLead(adjacent) == 0) {
+                rc.move(dir);
+                return;
+            }
+        }
+        moveTowardsLowRubble(rc, loc.add(loc.directionTo(myLoc)).add(loc.directionTo(myLoc)));
+    }
+
+    /**
+     * Run a single turn for a Builder.
+     * Builders work through the prioritized task queue in comms: repairing damaged buildings,
+     * placing watchtowers at threatened archons, placing labs, upgrading buildings, and late in
+     * the game turning themselves into lead farms. With no task posted, they repair anything nearby and stay
+     * close to our nearest archon.
+     * This code is wrapped inside the infinite loop in run(), so it is called once per turn.
+     */
+    static void runBuilder(RobotController rc) throws GameActionException {
+        // Repair anything damaged we happen to be next to
+        repairNearbyBuildings(rc);
+
+        int index = getBuilderTaskIndex(rc);
+        if (index == -1) {
+            MapLocation nearestArchon = getNearestArchon(rc);
+            if (rc.getLocation().distanceSquaredTo(nearestArchon) > LAB_ARCHON_MAX_DIST) {
+                moveTowardsLowRubble(rc, nearestArchon);
+            }
+            return;
+        }
+
+        MapLocation loc = getLocationFromIndex(rc, index);
+        switch (getIntFromIndex(rc, index)) {
+            case BUILDER_TASK_REPAIR:     doRepairTask(rc, index, loc); break;
+            case BUILDER_TASK_WATCHTOWER: doBuildTask(rc, index, loc, RobotType.WATCHTOWER); break;
+            case BUILDER_TASK_LAB:        doBuildTask(rc, index, loc, RobotType.LABORATORY); break;
+            case BUILDER_TASK_MUTATE:     doMutateTask(rc, index, loc); break;
+            case BUILDER_TASK_LEAD_FARM:  doLeadFarmTask(rc, index, loc); break;
+        }
+    }
+
+    /**
+     * Puts the location for rc in the comms array if it isn't already there. Once an archon has a
+     * slot it keeps it, and the slot is rewritten in a single write whenever the archon moves.
+     * @param rc the RobotController whose location should be put in comms
+     * @throws GameActionException
+     *
+     */
+    static void putArchonLocationInComms(RobotController rc) throws GameActionException {
+        MapLocation currLoc = rc.getLocation();
+        if (myArchonIndex != -1) {
+            if (!getLocationFromIndex(rc, myArchonIndex).equals(currLoc)) {
+                writeLocationAndIntToIndex(rc, myArchonIndex, currLoc, getIntFromIndex(rc, myArchonIndex));
+            }
+            return;
+        }
+
+        int index = ARCHON_LOCATION_START_INDEX;
+        while (rc.readSharedArray(index) != 0) {
+            if (getLocationFromIndex(rc, index).equals(currLoc)) {
+                // This rc's location is already in the comms array
+                myArchonIndex = index;
+                return;
+            }
+            index++;
+        }
+
+        // Add this rc's location to the comms array at the next available index
+        writeLocationAndIntToIndex(rc, index, currLoc, OUR_ARCHON_IS_SAFE);
+        myArchonIndex = index;
+    }
+
+    /**
+     * Returns true if the Direction dir is towards an archon on our team, false otherwise.
+     * @param rc
+     * @param dir
+     * @return
+     * @throws GameActionException
+     */
+    static boolean directionIsTowardsFriendlyArchon(RobotController rc, Direction dir) throws GameActionException {
+        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
+            MapLocation currArchon = getLocationFromIndex(rc, i);
+            if (currArchon.equals(NO_INFO)) {
+                // We reached the end of the archons in comms array
+                break;
+            }
+
+            Direction toFriendlyArchon = rc.getLocation().directionTo(currArchon);
+            if (dir.dx == toFriendlyArchon.dx && dir.dy == toFriendlyArchon.dy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the Direction dir goes towards the center of the map in
+     * either x or y or both, false otherwise.
+     * @param rc
+     * @param dir
+     * @return
+     * @throws GameActionException
+     */
+    static boolean directionIsTowardsMapCenter(RobotController rc, Direction dir) throws GameActionException {
+        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
+        Direction toCenter = rc.getLocation().directionTo(center);
+        if (dir.dx * toCenter.dx >= 0 && dir.dy * toCenter.dy >= 0) {
+            // If the x and y component of dir go towards center, return true
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns an array of Direction objects that represents all directions that are
+     * towards the center of the map and not towards a friendly archon.
+     * @param rc
+     * @return an array of Directions for rc to build in
+     * @throws GameActionException
+     */
+    static List<Direction> getArchonBuildDir(RobotController rc) throws GameActionException {
+        List<Direction> allValidDir = new ArrayList<>();
+        for (Direction dir : directions) {
+            if (!directionIsTowardsFriendlyArchon(rc, dir) && directionIsTowardsMapCenter(rc, dir)) {
+                allValidDir.add(dir);
+            }
+        }
+        return allValidDir;
+    }
+
+    /**
+     * Causes rc to build a robot of the given type in dir, or in the closest direction to dir it can
+     * build in. Returns true if a robot was built.
+     * @param rc, the RobotController of an archon or builder
+     * @param type the type of robot to build
+     * @param dir the preferred direction to build in
+     * @return
+     * @throws GameActionException
+     */
+    static boolean buildRobotTowards(RobotController rc, RobotType type, Direction dir) throws GameActionException {
+        if (rc.canBuildRobot(type, dir)) {
+            buildRobotAndRecord(rc, type, dir);
+            return true;
+        }
+
+        Direction left = dir;
+        Direction right = dir;
+        for (int i = 0; i < 4; i++) {
+            left = left.rotateLeft();
+            if (rc.canBuildRobot(type, left)) {
+                buildRobotAndRecord(rc, type, left);
+                return true;
+            }
+
+            right = right.rotateRight();
+            if (rc.canBuildRobot(type, right)) {
+                buildRobotAndRecord(rc, type, right);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the damage robot deals per 100 turns of action cooldown, or 0 if it cannot attack
+     * right now. Watchtowers only deal damage in turret mode.
+     * @param robot
+     * @return
+     */
+    static int getDamagePerHundredTurns(RobotInfo robot) {
+        if (!isAttacker(robot)) {
+            return 0;
+        }
+        RobotType type = robot.getType();
+        return type.damage * 1000 / type.actionCooldown;
+    }
+
+    /**
+     * Returns the combat strength of robot, combining how fast it deals damage with how much
+     * damage it takes to kill. Units that cannot attack still count a little for their health.
+     * @param robot
+     * @return
+     */
+    static int getCombatStrength(RobotInfo robot) {
+        int health = robot.getHealth();
+        return getDamagePerHundredTurns(robot) * health / 100 + health / 10;
+    }
+
+    /**
+     * Returns the index of dir in directions, or directions.length for Direction.CENTER.
+     * @param dir
+     * @return
+     */
+    static int getDirectionIndex(Direction dir) {
+        for (int i = 0; i < directions.length; i++) {
+            if (directions[i] == dir) {
+                return i;
+            }
+        }
+        return directions.length;
+    }
+
+    /**
+     * Writes the quantized threat level and bearing of the archon at archonIndex to comms.
+     * @param rc any RobotController that has access to comms array
+     * @param archonIndex the index in the comms array of the archon's location
+     * @param threatLevel the threat level, from 0 (safe) to THREAT_MAX_LEVEL
+     * @param bearing the direction the threat comes from, or CENTER if it surrounds the archon
+     * @throws GameActionException
+     */
+    static void writeArchonThreat(RobotController rc, int archonIndex, int threatLevel, Direction bearing) throws GameActionException {
+        int index = ARCHON_THREAT_START_INDEX + archonIndex - ARCHON_LOCATION_START_INDEX;
+        rc.writeSharedArray(index, threatLevel * 10 + getDirectionIndex(bearing));
+    }
+
+    /**
+     * Gets the threat level of the archon at archonIndex in comms, 0 if the archon is safe.
+     * @param rc any RobotController that has access to comms array
+     * @param archonIndex the index in the comms array of the archon's location
+     * @return
+     * @throws GameActionException
+     */
+    static int getArchonThreatLevel(RobotController rc, int archonIndex) throws GameActionException {
+        return rc.readSharedArray(ARCHON_THREAT_START_INDEX + archonIndex - ARCHON_LOCATION_START_INDEX) / 10;
+    }
+
+    /**
+     * Gets the direction the threat to the archon at archonIndex in comms comes from.
+     * @param rc any RobotController that has access to comms array
+     * @param archonIndex the index in the comms array of the archon's location
+     * @return
+     * @throws GameActionException
+     */
+    static Direction getArchonThreatBearing(RobotController rc, int archonIndex) throws GameActionException {
+        int bearing = rc.readSharedArray(ARCHON_THREAT_START_INDEX + archonIndex - ARCHON_LOCATION_START_INDEX) % 10;
+        return bearing < directions.length ? directions[bearing] : Direction.CENTER;
+    }
+
+    /**
+     * Checks if enemies are near rc. Sums the combat strength of every visible enemy into a threat
+     * magnitude and bearing, publishes them in comms, and builds at most one soldier towards the
+     * threat if it outweighs the soldiers already defending. Returns true if rc is outgunned and
+     * should save resources for defense, false otherwise.
+     * @param rc
+     * @throws GameActionException
+     */
+    static boolean defendIfEnemies(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        RobotInfo[] enemies = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam().opponent());
+        int threat = 0;
+        int threatX = 0;
+        int threatY = 0;
+        int maxDefenders = 0;
+        for (RobotInfo enemy : enemies) {
+            int strength = getCombatStrength(enemy);
+            Direction dir = myLoc.directionTo(enemy.getLocation());
+            threat += strength;
+            threatX += strength * dir.dx;
+            threatY += strength * dir.dy;
+            maxDefenders += isAttacker(enemy) ? NUM_SOLDIERS_FOR_VIOLENT_ENEMY : NUM_SOLDIERS_FOR_PEACEFUL_ENEMY;
+        }
+
+        int threatLevel = Math.min(THREAT_MAX_LEVEL, (threat + THREAT_QUANTUM - 1) / THREAT_QUANTUM);
+        Direction bearing = myLoc.directionTo(new MapLocation(myLoc.x + threatX, myLoc.y + threatY));
+        writeArchonThreat(rc, myArchonIndex, threatLevel, bearing);
+        if (threat == 0) {
+            return false;
+        }
+        if (threatLevel >= WATCHTOWER_THREAT_LEVEL) {
+            // We are under heavy attack, so ask builders for a watchtower
+            postBuilderTask(rc, BUILDER_TASK_WATCHTOWER, myLoc);
+        }
+
+        int defense = 0;
+        int defenders = 0;
+        boolean haveMiner = false;
+        RobotInfo[] friends = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam());
+        for (RobotInfo friend : friends) {
+            if (friend.getType() == RobotType.SOLDIER) {
+                defense += getCombatStrength(friend);
+                defenders++;
+            } else if (friend.getType() == RobotType.MINER) {
+                haveMiner = true;
+            }
+        }
+
+        if (threat > defense && defenders < maxDefenders) {
+            // Build a single soldier as close to the threat as possible
+            buildRobotTowards(rc, RobotType.SOLDIER, bearing == Direction.CENTER ? directions[0] : bearing);
+            return true;
+        }
+
+        // Make a miner to pick up the lead after we kill the enemy
+        if (!haveMiner) {
+            for (Direction dir : directions) {
+                if (rc.canBuildRobot(RobotType.MINER, dir)) {
+                    buildRobotAndRecord(rc, RobotType.MINER, dir);
+                    break;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Causes the archon rc to repair the friendly unit within range that gains the most from a
+     * single repair action. Units missing at least a full repair come first, then those missing
+     * the most health. Only units below healthPercent of their max health are considered.
+     * @param rc
+     * @param healthPercent
+     * @throws GameActionException
+     */
+    static void repairNearby(RobotController rc, int healthPercent) throws GameActionException {
+        if (!rc.isActionReady()) {
+            return;
+        }
+
+        int healing = -rc.getType().damage;
+        RobotInfo best = null;
+        int bestScore = 0;
+        RobotInfo[] friends = rc.senseNearbyRobots(rc.getType().actionRadiusSquared, rc.getTeam());
+        for (RobotInfo friend : friends) {
+            int maxHealth = friend.getType().health;
+            int missingHealth = maxHealth - friend.getHealth();
+            if (missingHealth <= 0 || friend.getType().isBuilding() || friend.getHealth() * 100 >= maxHealth * healthPercent) {
+                continue;
+            }
+
+            int score = Math.min(missingHealth, healing) * 10000 + missingHealth;
+            if (score > bestScore) {
+                best = friend;
+                bestScore = score;
+            }
+        }
+
+        if (best != null && rc.canRepair(best.getLocation())) {
+            rc.repair(best.getLocation());
+        }
+    }
+
+    static void runArchon(RobotController rc) throws GameActionException {
+        // Put this archon's location in comms array if it isn't already
+        putArchonLocationInComms(rc);
+
+        // Keep the team income estimate up to date
+        updateIncomeEstimate(rc);
+
+        // Move to a better tile if we are packed up, or pack up if there is a much better tile nearby
+        if (relocateArchon(rc)) {
+            return;
+        }
+
+        // If we see enemies, produce soldiers and save resources
+        if (defendIfEnemies(rc)) {
+            // Keep repairing soldiers that retreated to us if we still have an action left
+            repairNearby(rc, 100);
+            return;
+        }
+
+        // Late in the game, ask builders to farm lead around us
+        if (rc.getRoundNum() >= LEAD_FARM_START_ROUND && turnCount % LEAD_FARM_POST_INTERVAL == 0) {
+            postBuilderTask(rc, BUILDER_TASK_LEAD_FARM, rc.getLocation());
+        }
+
+        // Upgrade our buildings if we are floating resources
+        planMutation(rc);
+
+        // Units that retreated to us come first, then we build, then we repair anybody else nearby
+        repairNearby(rc, SOLDIER_HEALED_HEALTH_PERCENT);
+        buildFromPlan(rc);
+        repairNearby(rc, 100);
+    }
+
+    /**
+     * Returns how good loc is for an archon to sit on. Rubble dominates since it slows down every
+     * build and repair, then nearby lead for our miners, then distance from the nearest engagement.
+     * @param rc the RobotController of an archon
+     * @param loc the location to score
+     * @param leadLocs the lead locations rc can see
+     * @param engagement the location of the nearest focus fire target, or null
+     * @return the score of loc, higher is better
+     * @throws GameActionException
+     */
+    static int getArchonTileScore(RobotController rc, MapLocation loc, MapLocation[] leadLocs, MapLocation engagement) throws GameActionException {
+        int score = -rc.senseRubble(loc) * 100;
+        int nearbyLead = 0;
+        for (MapLocation leadLoc : leadLocs) {
+            if (loc.distanceSquaredTo(leadLoc) <= ARCHON_RELOCATE_RADIUS) {
+                nearbyLead++;
+            }
+        }
+        score += Math.min(nearbyLead, 10) * 20;
+        if (engagement != null) {
+            score += Math.min(loc.distanceSquaredTo(engagement), 100);
+        }
+        return score;
+    }
+
+    /**
+     * Returns the best tile within ARCHON_RELOCATE_RADIUS for the archon at rc to move to according
+     * to getArchonTileScore, or null if no tile beats staying put by ARCHON_RELOCATE_MIN_GAIN.
+     * @param rc the RobotController of an archon
+     * @return
+     * @throws GameActionException
+     */
+    static MapLocation getArchonRelocation(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        MapLocation[] leadLocs = rc.senseNearbyLocationsWithLead(rc.getType().visionRadiusSquared);
+        MapLocation engagement = getNearestFocusFireLocation(rc);
+
+        MapLocation best = null;
+        int bestScore = getArchonTileScore(rc, myLoc, leadLocs, engagement) + ARCHON_RELOCATE_MIN_GAIN;
+        for (MapLocation loc : rc.getAllLocationsWithinRadiusSquared(myLoc, ARCHON_RELOCATE_RADIUS)) {
+            if (rc.isLocationOccupied(loc)) {
+                continue;
+            }
+            int score = getArchonTileScore(rc, loc, leadLocs, engagement);
+            if (score > bestScore) {
+                best = loc;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Handles moving the archon at rc to a tile with less rubble. Every ARCHON_RELOCATE_CHECK_INTERVAL
+     * turns a safe archon in turret mode looks for a much better tile nearby and transforms to
+     * portable mode to go there. A portable archon walks to its destination, updating its comms slot
+     * as it goes, and transforms back once it arrives, gets stuck, sees enemies or has been moving
+     * for ARCHON_RELOCATE_MAX_TURNS turns. A destination taken by another robot counts as reached
+     * once the archon is next to it.
+     * Returns true if the archon is relocating and should skip building and repairing this turn.
+     * @param rc the RobotController of an archon
+     * @return
+     * @throws GameActionException
+     */
+    static boolean relocateArchon(RobotController rc) throws GameActionException {
+        if (rc.getMode() == RobotMode.PORTABLE) {
+            MapLocation myLoc = rc.getLocation();
+            boolean arrived = archonDestination == null || myLoc.equals(archonDestination)
+                    || (myLoc.isAdjacentTo(archonDestination) && rc.canSenseRobotAtLocation(archonDestination));
+            boolean seesEnemies = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam().opponent()).length > 0;
+            // Moving around the destination resets archonStuckTurns, so also give up after a while
+            archonRelocateTurns++;
+            if (!arrived && !seesEnemies && archonStuckTurns < ARCHON_RELOCATE_MAX_STUCK_TURNS
+                    && archonRelocateTurns <= ARCHON_RELOCATE_MAX_TURNS) {
+                // defendIfEnemies doesn't run while we move, so keep our threat slot current
+                writeArchonThreat(rc, myArchonIndex, OUR_ARCHON_IS_SAFE, Direction.CENTER);
+                if (rc.isMovementReady()) {
+                    if (tryMove(rc, myLoc.directionTo(archonDestination))) {
+                        archonStuckTurns = 0;
+                        putArchonLocationInComms(rc);
+                    } else {
+                        archonStuckTurns++;
+                    }
+                }
+                return true;
+            }
+
+            // Set back up where we are
+            if (rc.canTransform()) {
+                rc.transform();
+                archonDestination = null;
+            }
+            if (seesEnemies) {
+                // We can't build until we are set up, but our defenders need to know about the threat
+                defendIfEnemies(rc);
+            }
+            return true;
+        }
+
+        // The first check is after the opening, so that the opening miners get built
+        if (turnCount % ARCHON_RELOCATE_CHECK_INTERVAL != 0 || !rc.canTransform()
+                || getArchonThreatLevel(rc, myArchonIndex) != OUR_ARCHON_IS_SAFE
+                || rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam().opponent()).length > 0) {
+            return false;
+        }
+
+        archonDestination = getArchonRelocation(rc);
+        if (archonDestination == null) {
+            return false;
+        }
+        archonStuckTurns = 0;
+        archonRelocateTurns = 0;
+        rc.transform();
+        return true;
+    }
+
+    /**
+     * Returns how much we want to upgrade a building of the given type and level, or 0 if we can't
+     * afford to mutate it to the next level while keeping MUTATE_LEAD_RESERVE lead for new units.
+     * A safe archon prefers to upgrade itself and its laboratories, while a threatened one prefers
+     * its watchtowers.
+     * @param rc the RobotController of an archon
+     * @param type the type of the building to consider
+     * @param level the current level of the building
+     * @param threatened whether the archon is under attack
+     * @return
+     */
+    static int getMutationValue(RobotController rc, RobotType type, int level, boolean threatened) {
+        if (level >= MAX_BUILDING_LEVEL) {
+            return 0;
+        }
+
+        if (rc.getTeamLeadAmount(rc.getTeam()) - type.getLeadMutateCost(level + 1) < MUTATE_LEAD_RESERVE
+                || rc.getTeamGoldAmount(rc.getTeam()) < type.getGoldMutateCost(level + 1)) {
+            return 0;
+        }
+
+        switch (type) {
+            case ARCHON:     return threatened ? 1 : 3;
+            case LABORATORY: return threatened ? 0 : 2;
+            case WATCHTOWER: return threatened ? 3 : 1;
+            default:         return 0;
+        }
+    }
+
+    /**
+     * Posts a mutate task for the building around the archon at rc that is most worth upgrading,
+     * if we are floating enough resources for it and no other mutation is waiting on a builder.
+     * @param rc the RobotController of an archon
+     * @throws GameActionException
+     */
+    static void planMutation(RobotController rc) throws GameActionException {
+        for (int i = BUILDER_TASK_START_INDEX; i < BUILDER_TASK_END_INDEX; i++) {
+            if (rc.readSharedArray(i) != 0 && getIntFromIndex(rc, i) == BUILDER_TASK_MUTATE) {
+                return;
+            }
+        }
+
+        boolean threatened = getArchonThreatLevel(rc, myArchonIndex) != OUR_ARCHON_IS_SAFE;
+        RobotInfo best = null;
+        int bestValue = 0;
+        for (RobotInfo friend : rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam())) {
+            if (!friend.getType().isBuilding()) {
+                continue;
+            }
+            int value = getMutationValue(rc, friend.getType(), friend.getLevel(), threatened);
+            if (value > bestValue) {
+                best = friend;
+                bestValue = value;
+            }
+        }
+
+        int myValue = getMutationValue(rc, rc.getType(), rc.getLevel(), threatened);
+        if (myValue > bestValue) {
+            postBuilderTask(rc, BUILDER_TASK_MUTATE, rc.getLocation());
+        } else if (best != null) {
+            postBuilderTask(rc, BUILDER_TASK_MUTATE, best.getLocation());
+        }
+    }
+
+    /**
+     * Returns the target ratio of miners, soldiers and builders for the current phase of the game.
+     * @param rc
+     * @return
+     */
+    static int[] getPhaseRatio(RobotController rc) {
+        int round = rc.getRoundNum();
+        if (round < EARLY_PHASE_END_ROUND) {
+            return earlyPhaseRatio;
+        } else if (round < LATE_PHASE_START_ROUND) {
+            return midPhaseRatio;
+        }
+        return latePhaseRatio;
+    }
+
+    /**
+     * Returns true if the archon at rc is allowed to build a robot of plannedTypes[i] right now.
+     * Miners are never built while the archon is threatened, and only the archon furthest from the
+     * center builds builders, once it has built its starting miners, until lead farming starts.
+     * @param rc
+     * @param i
+     * @param threatened
+     * @return
+     * @throws GameActionException
+     */
+    static boolean isPlannedTypeAllowed(RobotController rc, int i, boolean threatened) throws GameActionException {
+        switch (plannedTypes[i]) {
+            case MINER:   return !threatened;
+            case BUILDER:
+                if (rc.getRoundNum() >= LEAD_FARM_START_ROUND) {
+                    // Late in the game, every archon makes builders to turn into lead farms
+                    return unitsBuilt[i] < LEAD_FARM_BUILDERS;
+                }
+                return unitsBuilt[i] < MAX_BUILDERS && unitsBuilt[0] >= STARTING_MINERS && isFurthestArchonFromCenter(rc);
+            default:      return true;
+        }
+    }
+
+    /**
+     * Builds the next robot in the archon's production plan. Sages come first whenever we have
+     * the gold for one. Otherwise, the planner ranks miners, soldiers and builders by how far this
+     * archon is below the phase's target ratio for each, and builds the most needed one we can
+     * afford, so we never sit on lead that could buy something useful.
+     * @param rc the RobotController of an archon
+     * @throws GameActionException
+     */
+    static void buildFromPlan(RobotController rc) throws GameActionException {
+        if (!rc.isActionReady()) {
+            return;
+        }
+
+        // Pick a direction to build in.
+        List<Direction> allValidDir = getArchonBuildDir(rc);
+        Direction dir = allValidDir.isEmpty() ? directions[0] : allValidDir.get(rng.nextInt(allValidDir.size()));
+
+        if (rc.getTeamGoldAmount(rc.getTeam()) >= RobotType.SAGE.buildCostGold
+                && buildRobotTowards(rc, RobotType.SAGE, dir)) {
+            return;
+        }
+
+        boolean threatened = getArchonThreatLevel(rc, myArchonIndex) != OUR_ARCHON_IS_SAFE;
+        int[] ratio = getPhaseRatio(rc);
+        int ratioSum = 0;
+        int totalBuilt = 0;
+        for (int i = 0; i < plannedTypes.length; i++) {
+            if (ratio[i] > 0 && isPlannedTypeAllowed(rc, i, threatened)) {
+                ratioSum += ratio[i];
+                totalBuilt += unitsBuilt[i];
+            }
+        }
+
+        // How far below its share of the next build each type is, or MIN_VALUE if we can't build it
+        for (int i = 0; i < plannedTypes.length; i++) {
+            if (ratio[i] > 0 && isPlannedTypeAllowed(rc, i, threatened)) {
+                planDeficits[i] = ratio[i] * (totalBuilt + 1) - unitsBuilt[i] * ratioSum;
+            } else {
+                planDeficits[i] = Integer.MIN_VALUE;
+            }
+        }
+
+        int lead = rc.getTeamLeadAmount(rc.getTeam());
+        for (int tries = 0; tries < plannedTypes.length; tries++) {
+            int best = -1;
+            for (int i = 0; i < plannedTypes.length; i++) {
+                if (planDeficits[i] != Integer.MIN_VALUE && (best == -1 || planDeficits[i] > planDeficits[best])) {
+                    best = i;
+                }
+            }
+            if (best == -1) {
+                return;
+            }
+
+            if (plannedTypes[best].buildCostLead <= lead && buildRobotTowards(rc, plannedTypes[best], dir)) {
+                if (plannedTypes[best] == RobotType.BUILDER && rc.getRoundNum() < LEAD_FARM_START_ROUND) {
+                    // Our first builder's job is our laboratory
+                    postBuilderTask(rc, BUILDER_TASK_LAB, rc.getLocation());
+                }
+                unitsBuilt[best]++;
+                return;
+            }
+            planDeficits[best] = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Returns true if this is our team's furthest archon from the center, false otherwise.
+     * Breaks ties by which archon has the lowest id (is earliest in the comms array and will
+     * produce troops first so will make gold fastest).
+     * @param rc
+     * @return
+     * @throws GameActionException
+     */
+    static boolean isFurthestArchonFromCenter(RobotController rc) throws GameActionException {
+        MapLocation center = new MapLocation(rc.getMapWidth(), rc.getMapHeight());
+        int myDistance = rc.getLocation().distanceSquaredTo(center);
+        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
+            MapLocation currArchon = getLocationFromIndex(rc, i);
+            if (currArchon.equals(NO_INFO)) {
+                // We reached the end of the archons in comms array
+                break;
+            }
+
+            if (currArchon.distanceSquaredTo(center) > myDistance) {
+                // There is an archon further than us
+                return false;
+            } else if (currArchon.distanceSquaredTo(center) == myDistance) {
+                // Either this is us, or there is another archon of equal distance. If this is a
+                // different archon, we are not the closest as ties are broken by which is earlier
+                // in the comms array.
+                return currArchon.equals(rc.getLocation());
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the MapLocation of the nearest archon to rc.
+     * @param rc
+     * @return
+     * @throws GameActionException
+     */
+    static MapLocation getNearestArchon(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        MapLocation nearestArchon = getLocationFromIndex(rc, ARCHON_LOCATION_START_INDEX);
+        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
+            MapLocation currArchon = getLocationFromIndex(rc, i);
+            if (currArchon.equals(NO_INFO)) {
+                // We reached the end of the archons in comms array
+                break;
+            }
+            if (myLoc.distanceSquaredTo(currArchon) < myLoc.distanceSquaredTo(nearestArchon)) {
+                nearestArchon = currArchon;
+            }
+        }
+
+        return nearestArchon;
+    }
+
+    /**
+     * Returns the index in the communications array of the nearest archon to rc.
+     * @param rc
+     * @return
+     * @throws GameActionException
+     */
+    static int getNearestArchonIndex(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        int nearestArchonIndex = ARCHON_LOCATION_START_INDEX;
+        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
+            MapLocation currArchon = getLocationFromIndex(rc, i);
+            if (currArchon.equals(NO_INFO)) {
+                // We reached the end of the archons in comms array
+                break;
+            }
+
+            MapLocation nearestArchon = getLocationFromIndex(rc, nearestArchonIndex);
+            if (myLoc.distanceSquaredTo(currArchon) < myLoc.distanceSquaredTo(nearestArchon)) {
+                nearestArchonIndex = i;
+            }
+        }
+
+        return nearestArchonIndex;
+    }
+
+    /**
+     * Returns the index in the communications array of the nearest archon to rc that rc does not
+     * know to be dead, or -1 if there is none. An archon is only known to be dead at the location
+     * where we saw it missing, since archons can relocate and update their slot.
+     * @param rc
+     * @return
+     * @throws GameActionException
+     */
+    static int getNearestLivingArchonIndex(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        int nearestArchonIndex = -1;
+        int nearestArchonDist = Integer.MAX_VALUE;
+        for (int i = ARCHON_LOCATION_START_INDEX; i < LEAD_FARM_START_INDEX; i++) {
+            MapLocation currArchon = getLocationFromIndex(rc, i);
+            if (currArchon.equals(NO_INFO)) {
+                // We reached the end of the archons in comms array
+                break;
+            }
+            if (currArchon.equals(deadArchonLocations[i - ARCHON_LOCATION_START_INDEX])) {
+                continue;
+            }
+
+            if (rc.canSenseLocation(currArchon)) {
+                RobotInfo robot = rc.senseRobotAtLocation(currArchon);
+                if (robot == null || robot.getType() != RobotType.ARCHON || robot.getTeam() != rc.getTeam()) {
+                    // We can see where this archon should be, and it is gone
+                    deadArchonLocations[i - ARCHON_LOCATION_START_INDEX] = currArchon;
+                    continue;
+                }
+            }
+
+            int dist = myLoc.distanceSquaredTo(currArchon);
+            if (dist < nearestArchonDist) {
+                nearestArchonIndex = i;
+                nearestArchonDist = dist;
+            }
+        }
+
+        return nearestArchonIndex;
+    }
+
+    /**
+     * Moves rc in dir, or rotated once left or right of dir if dir is blocked. Returns true if rc moved.
+     * @param rc
+     * @param dir
+     * @return
+     * @throws GameActionException
+     */
+    static boolean tryMove(RobotController rc, Direction dir) throws GameActionException {
+        if (rc.canMove(dir)) {
+            rc.move(dir);
+            return true;
+        } else if (rc.canMove(dir.rotateLeft())) {
+            rc.move(dir.rotateLeft());
+            return true;
+        } else if (rc.canMove(dir.rotateRight())) {
+            rc.move(dir.rotateRight());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * If rc can see more than two friends of the same type, returns the direction away from the
+     * center of these friends. Else, returns null.
+     * @param rc
+     * @return
+     * @throws GameActionException
+     */
+    static Direction checkClumped(RobotController rc) throws GameActionException {
+        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
+        int clumpAllowedDistance = (center.x / 2) * (center.x / 2);
+        if (rc.getLocation().distanceSquaredTo(center) > clumpAllowedDistance) {
+            // If we are far from the center, no need to prevent clumping
+            return null;
+        }
+
+        RobotInfo[] friendsVisible = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam());
         List<RobotInfo> sameTypeFriends = new ArrayList<>();
         for (RobotInfo friend : friendsVisible) {
             if (friend.getType() == rc.getType()) {
@@ -655,43 +1727,257 @@ public strictfp class RobotPlayer {
                 minRubble = rc.senseRubble(possibleMove);
             }
         }
-
-        return best;
+
+        return best;
+    }
+
+    /**
+     * Returns a good default direction for a miner or soldier. The default direction is
+     * calculated as going away from the nearest archon, unless this goes away from the center,
+     * then the default direction is towards the center.
+     * @param rc
+     * @return
+     * @throws GameActionException
+     */
+    static Direction getDefaultDirection(RobotController rc) throws GameActionException {
+        // If we are too clumped, go away from the clump
+        Direction dir = checkClumped(rc);
+        if (dir != null) {
+            return dir;
+        }
+
+        // Find the nearest archon
+        MapLocation myLoc = rc.getLocation();
+        Direction awayFromNearestArchon = getNearestArchon(rc).directionTo(myLoc);
+        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
+        Direction centerDir = null;
+
+        Direction toCenter = myLoc.directionTo(center);
+        if (awayFromNearestArchon.dx * toCenter.dx >= 0 && awayFromNearestArchon.dy * toCenter.dy >= 0) {
+            // Go away from the nearest archon as long as it doesn't go away from the center
+            centerDir = awayFromNearestArchon;
+        } else {
+            // Go to the center if the direction away from the nearest archon goes towards the outside
+            centerDir = toCenter;
+        }
+
+        // Go towards any direction roughly towards centerDir that has small rubble
+        // return getBestRubbleDir(rc, centerDir);
+        return centerDir;
+    }
+
+    /**
+     * Returns the lead to leave on a tile when mining it. Tiles with at least one lead regenerate
+     * every ADD_LEAD_EVERY_ROUNDS rounds, so we leave MINIMUM_LEAD unless the game ends before the
+     * next regeneration, in which case we take everything.
+     * @param rc
+     * @return
+     */
+    static int getLeadToLeave(RobotController rc) {
+        int round = rc.getRoundNum();
+        int nextRegenRound = (round / GameConstants.ADD_LEAD_EVERY_ROUNDS + 1) * GameConstants.ADD_LEAD_EVERY_ROUNDS;
+        return nextRegenRound > GameConstants.GAME_MAX_NUMBER_OF_ROUNDS ? 0 : MINIMUM_LEAD;
+    }
+
+    static int leadSlot(MapLocation loc) {
+        return loc.x * GameConstants.MAP_MAX_HEIGHT + loc.y;
+    }
+
+    /**
+     * Returns the index of loc in knownLeadLocs, or -1 if it isn't a known lead tile.
+     * @param loc
+     * @return
+     */
+    static int findKnownLead(MapLocation loc) {
+        int index = knownLeadSlots[leadSlot(loc)] - 1;
+        if (index >= 0 && index < numKnownLeadTiles && knownLeadLocs[index].equals(loc)) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Records that loc had amount lead in the current round. If there is no room left, it replaces
+     * the next known tile, in turn, that we didn't see this round.
+     * @param rc
+     * @param loc
+     * @param amount
+     * @return false if every known tile was seen this round, so loc couldn't be added
+     */
+    static boolean rememberLead(RobotController rc, MapLocation loc, int amount) {
+        int round = rc.getRoundNum();
+        int index = findKnownLead(loc);
+        if (index == -1) {
+            if (numKnownLeadTiles < MINER_MAX_KNOWN_TILES) {
+                index = numKnownLeadTiles++;
+            } else {
+                for (int tries = 0; tries < MINER_MAX_KNOWN_TILES && index == -1; tries++) {
+                    if (knownLeadRounds[nextEvictedLeadTile] < round) {
+                        index = nextEvictedLeadTile;
+                    }
+                    nextEvictedLeadTile = (nextEvictedLeadTile + 1) % MINER_MAX_KNOWN_TILES;
+                }
+                if (index == -1) {
+                    return false;
+                }
+                knownLeadSlots[leadSlot(knownLeadLocs[index])] = 0;
+            }
+            knownLeadLocs[index] = loc;
+            knownLeadSlots[leadSlot(loc)] = index + 1;
+        }
+        knownLeadAmounts[index] = amount;
+        knownLeadRounds[index] = round;
+        return true;
+    }
+
+    /**
+     * Forgets the known lead tile at index, moving the last known tile into its place.
+     * @param index
+     */
+    static void forgetKnownLead(int index) {
+        knownLeadSlots[leadSlot(knownLeadLocs[index])] = 0;
+        numKnownLeadTiles--;
+        if (index != numKnownLeadTiles) {
+            knownLeadLocs[index] = knownLeadLocs[numKnownLeadTiles];
+            knownLeadAmounts[index] = knownLeadAmounts[numKnownLeadTiles];
+            knownLeadRounds[index] = knownLeadRounds[numKnownLeadTiles];
+            knownLeadSlots[leadSlot(knownLeadLocs[index])] = index + 1;
+        }
+    }
+
+    /**
+     * Updates the known lead tiles with every tile rc can see. Known tiles in vision that have no
+     * lead left were mined out by someone, and empty tiles never regenerate, so they are forgotten.
+     * @param rc
+     * @throws GameActionException
+     */
+    static void rememberVisibleLead(RobotController rc) throws GameActionException {
+        int round = rc.getRoundNum();
+        for (int i = numKnownLeadTiles - 1; i >= 0; i--) {
+            MapLocation loc = knownLeadLocs[i];
+            if (rc.canSenseLocation(loc)) {
+                int amount = rc.senseLead(loc);
+                if (amount == 0) {
+                    forgetKnownLead(i);
+                } else {
+                    knownLeadAmounts[i] = amount;
+                    knownLeadRounds[i] = round;
+                }
+            }
+        }
+        for (MapLocation loc : rc.senseNearbyLocationsWithLead(rc.getType().visionRadiusSquared)) {
+            if (!rememberLead(rc, loc, rc.senseLead(loc))) {
+                // Everything we know about is in sight, so there is no room for more
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the lead we expect is on the known tile at index in the current round, counting the
+     * regeneration it got since we last saw it.
+     * @param rc
+     * @param index
+     * @return
+     */
+    static int estimateKnownLead(RobotController rc, int index) {
+        int amount = knownLeadAmounts[index];
+        if (amount == 0) {
+            return 0;
+        }
+        int regenerations = rc.getRoundNum() / GameConstants.ADD_LEAD_EVERY_ROUNDS
+                - knownLeadRounds[index] / GameConstants.ADD_LEAD_EVERY_ROUNDS;
+        return amount + regenerations * GameConstants.ADD_LEAD;
+    }
+
+    /**
+     * Mines the lead tiles in rc's action radius with the most lead to spare first, leaving
+     * getLeadToLeave on each. Returns true if lead is left to mine in range after our action
+     * cooldown runs out.
+     * @param rc a RobotController of a miner
+     * @return
+     * @throws GameActionException
+     */
+    static boolean mineLeadSustainably(RobotController rc) throws GameActionException {
+        int leadToLeave = getLeadToLeave(rc);
+        MapLocation[] leadInRange = rc.senseNearbyLocationsWithLead(rc.getType().actionRadiusSquared);
+        while (true) {
+            MapLocation best = null;
+            int bestLead = leadToLeave;
+            for (MapLocation loc : leadInRange) {
+                int lead = rc.senseLead(loc);
+                if (lead > bestLead) {
+                    best = loc;
+                    bestLead = lead;
+                }
+            }
+
+            if (best == null) {
+                return false;
+            }
+            if (!rc.canMineLead(best)) {
+                return true;
+            }
+
+            if (minerHome == null) {
+                minerHome = rc.getLocation();
+            }
+            while (rc.canMineLead(best) && rc.senseLead(best) > leadToLeave) {
+                rc.mineLead(best);
+            }
+            rememberLead(rc, best, rc.senseLead(best));
+        }
     }
 
     /**
-     * Returns a good default direction for a miner or soldier. The default direction is
-     * calculated as going away from the nearest archon, unless this goes away from the center,
-     * then the default direction is towards the center.
-     * @param rc
+     * Returns the known lead tile near the miner's home with the most lead to spare for the distance
+     * we have to walk to it, or null if every known tile is waiting to regenerate. Tiles that
+     * another robot is standing next to are left for that robot, so miners rotate between deposits.
+     * @param rc a RobotController of a miner
      * @return
      * @throws GameActionException
      */
-    static Direction getDefaultDirection(RobotController rc) throws GameActionException {
-        // If we are too clumped, go away from the clump
-        Direction dir = checkClumped(rc);
-        if (dir != null) {
-            return dir;
-        }
-
-        // Find the nearest archon
+    static MapLocation getBestLeadTarget(RobotController rc) throws GameActionException {
         MapLocation myLoc = rc.getLocation();
-        Direction awayFromNearestArchon = getNearestArchon(rc).directionTo(myLoc);
-        MapLocation center = new MapLocation(rc.getMapWidth() / 2, rc.getMapHeight() / 2);
-        Direction centerDir = null;
+        int leadToLeave = getLeadToLeave(rc);
+        MapLocation best = null;
+        int bestScore = 0;
+        for (int i = 0; i < numKnownLeadTiles; i++) {
+            MapLocation loc = knownLeadLocs[i];
+            if (minerHome != null && loc.distanceSquaredTo(minerHome) > MINER_HOME_RADIUS) {
+                continue;
+            }
 
-        Direction toCenter = myLoc.directionTo(center);
-        if (awayFromNearestArchon.dx * toCenter.dx >= 0 && awayFromNearestArchon.dy * toCenter.dy >= 0) {
-            // Go away from the nearest archon as long as it doesn't go away from the center
-            centerDir = awayFromNearestArchon;
-        } else {
-            // Go to the center if the direction away from the nearest archon goes towards the outside
-            centerDir = toCenter;
+            int spare = estimateKnownLead(rc, i) - leadToLeave;
+            if (spare <= 0) {
+                continue;
+            }
+            if (rc.canSenseLocation(loc) && !loc.equals(myLoc) && rc.isLocationOccupied(loc)) {
+                // Somebody is already mining here
+                continue;
+            }
+
+            int score = spare * 100 / (10 + myLoc.distanceSquaredTo(loc));
+            if (score > bestScore) {
+                best = loc;
+                bestScore = score;
+            }
         }
+        return best;
+    }
 
-        // Go towards any direction roughly towards centerDir that has small rubble
-        // return getBestRubbleDir(rc, centerDir);
-        return centerDir;
+    /**
+     * Returns the number of known lead tiles within MINER_HOME_RADIUS of the miner's home.
+     * @return
+     */
+    static int countLeadTilesNearHome() {
+        int count = 0;
+        for (int i = 0; i < numKnownLeadTiles; i++) {
+            if (knownLeadLocs[i].distanceSquaredTo(minerHome) <= MINER_HOME_RADIUS) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -699,8 +1985,10 @@ public strictfp class RobotPlayer {
      * This code is wrapped inside the infinite loop in run(), so it is called once per turn.
      */
     static void runMiner(RobotController rc) throws GameActionException {
+        if (knownLeadSlots == null) {
+            knownLeadSlots = new int[GameConstants.MAP_MAX_WIDTH * GameConstants.MAP_MAX_HEIGHT];
+        }
         int actionRadius = rc.getType().actionRadiusSquared;
-        int visionRadius = rc.getType().visionRadiusSquared;
 
         // Mine any gold we can reach
         for (MapLocation loc : rc.senseNearbyLocationsWithGold(actionRadius)) {
@@ -714,16 +2002,11 @@ public strictfp class RobotPlayer {
             }
         }
 
-        // Mine any lead we can reach as long as we don't deplete it
-        for (MapLocation loc : rc.senseNearbyLocationsWithLead(actionRadius)) {
-            while (rc.canMineLead(loc) && rc.senseLead(loc) > MINIMUM_LEAD) {
-                rc.mineLead(loc);
-            }
-
-            if (rc.senseLead(loc) > MINIMUM_LEAD) {
-                // If we didn't finish mining the lead, stay here
-                return;
-            }
+        // Remember the lead we see, then mine what we can reach without killing regeneration
+        rememberVisibleLead(rc);
+        if (mineLeadSustainably(rc)) {
+            // If we didn't finish mining the lead, stay here
+            return;
         }
 
         // Go towards any gold we see
@@ -745,26 +2028,25 @@ public strictfp class RobotPlayer {
             return;
         }
 
-        // Go towards any lead we can go to
-        for (MapLocation loc : rc.senseNearbyLocationsWithLead(visionRadius)) {
-            Direction toLead = rc.getLocation().directionTo(loc);
-            if (rc.senseLead(loc) > MINIMUM_LEAD && rc.canMove(toLead)) {
-                while (rc.isActionReady() && rc.getLocation().distanceSquaredTo(loc) > rc.getType().actionRadiusSquared) {
-                    if (rc.canMove(toLead)) {
-                        rc.move(toLead);
-                    } else if (rc.canMove(toLead.rotateRight())) {
-                        rc.move(toLead.rotateRight());
-                    } else if (rc.canMove(toLead.rotateLeft())) {
-                        rc.move(toLead.rotateLeft());
-                    } else {
-                        break;
-                    }
-                    toLead = rc.getLocation().directionTo(loc);
-                }
-                return;
+        // Go towards the best lead tile around our home, and mine it if we get there this turn
+        MapLocation leadTarget = getBestLeadTarget(rc);
+        if (leadTarget != null) {
+            tryMove(rc, rc.getLocation().directionTo(leadTarget));
+            mineLeadSustainably(rc);
+            return;
+        }
+
+        if (minerHome != null && countLeadTilesNearHome() >= MINER_MIN_HOME_TILES) {
+            // Our deposits are all waiting to regenerate, so stay close to them
+            if (rc.getLocation().distanceSquaredTo(minerHome) > MINER_HOME_RADIUS) {
+                tryMove(rc, rc.getLocation().directionTo(minerHome));
             }
+            return;
         }
 
+        // Our home is not worth waiting at, so look for a new one
+        minerHome = null;
+
         // If we see no gold or lead, follow the default move
         Direction defaultDir = getDefaultDirection(rc);
         if (rc.canMove(defaultDir)) {
@@ -789,59 +2071,91 @@ public strictfp class RobotPlayer {
         }
     }
 
-    static PriorityQueue<RobotInfo> getAttackPriority(RobotController rc) {
-        PriorityQueue<RobotInfo> attackPriority = new PriorityQueue<> (new Comparator<RobotInfo>() {
-            public int compare(RobotInfo r1, RobotInfo r2) {
-                // Prioritize above all finishing off any enemy
-                if (r1.getHealth() < 3) {
-                    return -1;
-                } else if (r2.getHealth() < 3) {
-                    return 1;
-                }
-
-                // Then prioritize attacking enemies in order
-                if (r1.getType() == RobotType.SAGE) {
-                    return -1;
-                } else if (r2.getType() == RobotType.SAGE) {
-                    return 1;
-                } else if (r1.getType() == RobotType.WATCHTOWER) {
-                    return -1;
-                } else if (r2.getType() == RobotType.WATCHTOWER) {
-                    return 1;
-                } else if (r1.getType() == RobotType.SOLDIER) {
-                    return -1;
-                } else if (r2.getType() == RobotType.SOLDIER) {
-                    return 1;
-                } else if (r1.getType() == RobotType.ARCHON) {
-                    return -1;
-                } else if (r2.getType() == RobotType.ARCHON) {
-                    return 1;
-                } else if (r1.getType() == RobotType.LABORATORY) {
-                    return -1;
-                } else if (r2.getType() == RobotType.LABORATORY) {
-                    return 1;
-                } else if (r1.getType() == RobotType.MINER) {
-                    return -1;
-                } else if (r2.getType() == RobotType.MINER) {
-                    return 1;
-                } else if (r1.getType() == RobotType.BUILDER) {
-                    return -1;
-                } else if (r2.getType() == RobotType.BUILDER) {
-                    return 1;
-                }
+    /**
+     * Returns how dangerous an enemy of the given type is, used to rank attack targets.
+     * Units that deal damage are worth far more than economy units.
+     * @param type the RobotType of the enemy
+     * @return the threat value of type
+     */
+    static int getThreatValue(RobotType type) {
+        switch (type) {
+            case SAGE:       return 60;
+            case WATCHTOWER: return 40;
+            case SOLDIER:    return 30;
+            case ARCHON:     return 6;
+            case LABORATORY: return 4;
+            case MINER:      return 2;
+            default:         return 1;
+        }
+    }
 
-                return 0;
-            }
-        });
+    /**
+     * Returns the attack score of enemy for a robot that deals damage per attack. Killing the enemy
+     * this turn is worth the most, then its threat value (discounted by the rubble slowing it down),
+     * then how little health it has left.
+     * @param enemy the enemy to score
+     * @param damage the damage our attack deals
+     * @param rubble the rubble on the enemy's tile
+     * @return the score of attacking enemy, higher is better
+     */
+    static int getAttackScore(RobotInfo enemy, int damage, int rubble) {
+        int health = enemy.getHealth();
+        int score = getThreatValue(enemy.getType()) * 10000 / (10 + rubble) - health;
+        if (health <= damage) {
+            // Prioritize above all finishing off any enemy
+            score += ATTACK_SCORE_KILL_BONUS;
+        }
+        return score;
+    }
 
+    /**
+     * Returns the enemy in enemies that rc should attack this turn, or null if none are in range.
+     * Scores every enemy in a single pass and only keeps the best, so no allocation is needed.
+     * The sector's shared focus fire target is preferred over anything but a kill.
+     * @param rc a RobotController that can attack
+     * @param enemies the enemies rc can see
+     * @return the best enemy to attack
+     * @throws GameActionException
+     */
+    static RobotInfo getBestAttackTarget(RobotController rc, RobotInfo[] enemies) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
         int actionRadius = rc.getType().actionRadiusSquared;
-        Team opponent = rc.getTeam().opponent();
-        RobotInfo[] enemies = rc.senseNearbyRobots(actionRadius, opponent);
+        int damage = rc.getType().getDamage(rc.getLevel());
+
+        int focusTargetID = readFocusFireTarget(rc);
+
+        RobotInfo best = null;
+        int bestScore = Integer.MIN_VALUE;
         for (RobotInfo enemy : enemies) {
-            attackPriority.add(enemy);
+            MapLocation enemyLoc = enemy.getLocation();
+            if (myLoc.distanceSquaredTo(enemyLoc) > actionRadius) {
+                continue;
+            }
+
+            int score = getAttackScore(enemy, damage, rc.senseRubble(enemyLoc));
+            if (enemy.getID() == focusTargetID) {
+                // Prefer the target the rest of our soldiers in this sector are shooting at
+                score += ATTACK_SCORE_FOCUS_BONUS;
+            }
+            if (score > bestScore) {
+                best = enemy;
+                bestScore = score;
+            }
         }
 
-        return attackPriority;
+        return best;
+    }
+
+    /**
+     * Causes rc to attack target and shares target with nearby soldiers through the sector's
+     * focus fire slot.
+     * @param rc a RobotController that can attack target
+     * @param target the enemy to attack
+     * @throws GameActionException
+     */
+    static void attackAndShareTarget(RobotController rc, RobotInfo target) throws GameActionException {
+        rc.attack(target.getLocation());
+        shareFocusFireTarget(rc, target, target.getHealth() <= rc.getType().getDamage(rc.getLevel()));
     }
 
     /**
@@ -854,25 +2168,284 @@ public strictfp class RobotPlayer {
         int nearestArchonIndex = getNearestArchonIndex(rc);
         MapLocation nearestArchon = getLocationFromIndex(rc, nearestArchonIndex);
         int nearestArchonDist = rc.getLocation().distanceSquaredTo(nearestArchon);
-        int threatDirection = getIntFromIndex(rc, nearestArchonIndex);
 
-        if (nearestArchonDist > SHIELD_ARCHON_MAX_DISTANCE || threatDirection == OUR_ARCHON_IS_SAFE) {
+        if (nearestArchonDist > SHIELD_ARCHON_MAX_DISTANCE || getArchonThreatLevel(rc, nearestArchonIndex) == OUR_ARCHON_IS_SAFE) {
             // Too far away to defend or nearest archon is not under attack
             return false;
         }
 
         if (nearestArchonDist < SHIELD_ARCHON_MAX_DISTANCE - 5) {
-            // Get pretty far from archon to make space for other soldiers
+            // Get pretty far from archon to make space for other soldiers, on the side the threat comes from
+            Direction bearing = getArchonThreatBearing(rc, nearestArchonIndex);
             Direction awayFromArchon = nearestArchon.directionTo(rc.getLocation());
-            if (rc.canMove(awayFromArchon)) {
-                rc.move(awayFromArchon);
-            } else if (rc.canMove(awayFromArchon.rotateLeft())) {
-                rc.move(awayFromArchon.rotateLeft());
-            } else if (rc.canMove(awayFromArchon.rotateRight())) {
-                rc.move(awayFromArchon.rotateRight());
+            if (bearing == Direction.CENTER || !tryMove(rc, bearing)) {
+                tryMove(rc, awayFromArchon);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if enemy can attack robots right now (i.e. it is a soldier, a sage, or a
+     * watchtower in turret mode), false otherwise.
+     * @param enemy
+     * @return
+     */
+    static boolean isAttacker(RobotInfo enemy) {
+        RobotType type = enemy.getType();
+        return type == RobotType.SOLDIER || type == RobotType.SAGE
+                || (type == RobotType.WATCHTOWER && enemy.getMode() == RobotMode.TURRET);
+    }
+
+    /**
+     * Fills microEnemies with the enemies the micro should consider and returns how many there are.
+     * When there are more than MICRO_MAX_ENEMIES, attackers are kept before anything else and
+     * nearer enemies before farther ones, so the robots that can hurt us are never left out.
+     * @param myLoc the location of the soldier
+     * @param enemies the enemies it can see
+     * @return
+     */
+    static int selectMicroEnemies(MapLocation myLoc, RobotInfo[] enemies) {
+        if (enemies.length <= MICRO_MAX_ENEMIES) {
+            System.arraycopy(enemies, 0, microEnemies, 0, enemies.length);
+            return enemies.length;
+        }
+
+        // Keep the MICRO_MAX_ENEMIES lowest ranks, replacing the worst kept enemy when a better one comes along
+        int worst = 0;
+        for (int e = 0; e < enemies.length; e++) {
+            RobotInfo enemy = enemies[e];
+            int rank = myLoc.distanceSquaredTo(enemy.getLocation()) + (isAttacker(enemy) ? 0 : MICRO_NON_ATTACKER_RANK);
+            if (e < MICRO_MAX_ENEMIES) {
+                microEnemies[e] = enemy;
+                microEnemyRanks[e] = rank;
+                if (rank > microEnemyRanks[worst]) {
+                    worst = e;
+                }
+            } else if (rank < microEnemyRanks[worst]) {
+                microEnemies[worst] = enemy;
+                microEnemyRanks[worst] = rank;
+                for (int i = 0; i < MICRO_MAX_ENEMIES; i++) {
+                    if (microEnemyRanks[i] > microEnemyRanks[worst]) {
+                        worst = i;
+                    }
+                }
+            }
+        }
+        return MICRO_MAX_ENEMIES;
+    }
+
+    /**
+     * Fills the micro buffers for the current tile and its eight neighbours: whether rc can move
+     * there, how many enemies can hit it next turn, how many enemies rc can hit from it, the
+     * rubble-adjusted action cooldown there, and the distance to the nearest allied soldier.
+     * @param rc a RobotController of a soldier
+     * @param enemies the enemies rc can see
+     * @throws GameActionException
+     */
+    static void evaluateMicroTiles(RobotController rc, RobotInfo[] enemies) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        int actionRadius = rc.getType().actionRadiusSquared;
+        int actionCooldown = rc.getType().actionCooldown;
+        boolean movementReady = rc.isMovementReady();
+
+        for (int i = 0; i < 9; i++) {
+            Direction dir = microDirections[i];
+            microThreats[i] = 0;
+            microTargets[i] = 0;
+            microAllyDist[i] = Integer.MAX_VALUE;
+            microCanMove[i] = dir == Direction.CENTER || (movementReady && rc.canMove(dir));
+            if (microCanMove[i]) {
+                microCooldown[i] = actionCooldown * (10 + rc.senseRubble(rc.adjacentLocation(dir))) / 10;
+            }
+        }
+
+        int numEnemies = selectMicroEnemies(myLoc, enemies);
+        for (int e = 0; e < numEnemies; e++) {
+            RobotInfo enemy = microEnemies[e];
+            MapLocation enemyLoc = enemy.getLocation();
+            int enemyRadius = isAttacker(enemy) ? enemy.getType().actionRadiusSquared : -1;
+            for (int i = 0; i < 9; i++) {
+                if (!microCanMove[i]) {
+                    continue;
+                }
+                int dx = myLoc.x + microDirections[i].dx - enemyLoc.x;
+                int dy = myLoc.y + microDirections[i].dy - enemyLoc.y;
+                int distance = dx * dx + dy * dy;
+                if (distance <= enemyRadius) {
+                    microThreats[i]++;
+                }
+                if (distance <= actionRadius) {
+                    microTargets[i]++;
+                }
+            }
+        }
+
+        RobotInfo[] friends = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam());
+        int numAllies = 0;
+        for (RobotInfo friend : friends) {
+            if (numAllies == MICRO_MAX_ALLIES) {
+                break;
+            }
+            if (friend.getType() != RobotType.SOLDIER) {
+                continue;
+            }
+            numAllies++;
+            MapLocation friendLoc = friend.getLocation();
+            for (int i = 0; i < 9; i++) {
+                int dx = myLoc.x + microDirections[i].dx - friendLoc.x;
+                int dy = myLoc.y + microDirections[i].dy - friendLoc.y;
+                int distance = dx * dx + dy * dy;
+                if (distance < microAllyDist[i]) {
+                    microAllyDist[i] = distance;
+                }
             }
         }
+    }
+
+    /**
+     * Returns the micro score of the tile at index i of microDirections. If wantToAttack, tiles we can
+     * attack from are worth the most. Otherwise we want to stay out of enemy reach while our action
+     * cools down. Ties are broken by cheaper action cooldowns and staying near allied soldiers.
+     * @param i the index of the tile in microDirections
+     * @param wantToAttack whether rc still has an attack to make this turn
+     * @return the score of the tile, higher is better
+     */
+    static int getMicroScore(int i, boolean wantToAttack) {
+        int score = -microThreats[i] * 1000 - microCooldown[i];
+        if (wantToAttack && microTargets[i] > 0) {
+            score += 100000;
+        }
+        if (microAllyDist[i] <= MICRO_ALLY_SUPPORT_DIST) {
+            score += 50;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the best direction for the soldier to move in according to getMicroScore, which
+     * is CENTER if staying put is best. evaluateMicroTiles must have been called this turn.
+     * @param wantToAttack whether rc still has an attack to make this turn
+     * @return the best direction to move in
+     */
+    static Direction getBestMicroDirection(boolean wantToAttack) {
+        int bestIndex = 0;
+        int bestScore = getMicroScore(0, wantToAttack);
+        for (int i = 1; i < 9; i++) {
+            if (!microCanMove[i]) {
+                continue;
+            }
+            int score = getMicroScore(i, wantToAttack);
+            if (score > bestScore) {
+                bestIndex = i;
+                bestScore = score;
+            }
+        }
+        return microDirections[bestIndex];
+    }
+
+    /**
+     * Causes rc to attack the best enemy in range according to getBestAttackTarget. Sages instead
+     * pick between a direct attack and envisioning an anomaly with sageAct.
+     * @param rc a RobotController of a soldier, sage or watchtower
+     * @param enemies the enemies rc can see
+     * @throws GameActionException
+     */
+    static void attackBestTarget(RobotController rc, RobotInfo[] enemies) throws GameActionException {
+        if (!rc.isActionReady()) {
+            return;
+        }
+        if (rc.getType() == RobotType.SAGE) {
+            sageAct(rc, enemies);
+            return;
+        }
+
+        RobotInfo target = getBestAttackTarget(rc, enemies);
+        if (target != null && rc.canAttack(target.getLocation())) {
+            attackAndShareTarget(rc, target);
+        }
+    }
+
+    /**
+     * Runs combat micro for the soldier or sage at rc: attacks before moving if it has a target in
+     * range and then backs out of enemy reach, or otherwise steps to the best tile to attack from
+     * and then attacks.
+     * @param rc a RobotController of a soldier or sage
+     * @param enemies the enemies rc can see
+     * @throws GameActionException
+     */
+    static void combatMicro(RobotController rc, RobotInfo[] enemies) throws GameActionException {
+        // Attack first if we can, then move to the tile that is safest while our action cools down
+        attackBestTarget(rc, enemies);
+
+        // Sages cool down for many turns after acting, so they only step back into range
+        // once their action will be ready by next turn
+        boolean wantToAttack = rc.isActionReady()
+                || (rc.getType() == RobotType.SAGE && rc.getActionCooldownTurns() < SAGE_APPROACH_COOLDOWN_TURNS);
+        evaluateMicroTiles(rc, enemies);
+        Direction dir = getBestMicroDirection(wantToAttack);
+        if (dir != Direction.CENTER) {
+            rc.move(dir);
+        }
+
+        attackBestTarget(rc, enemies);
+    }
+
+    /**
+     * Handles the retreat-and-repair loop for the soldier or sage at rc. Units below
+     * SOLDIER_RETREAT_HEALTH_PERCENT health remember where they were, go to the nearest living
+     * archon and wait in its repair range until healed, then walk back to where they were.
+     * Returns true if rc is retreating or returning this turn and should skip its normal behavior.
+     * @param rc a RobotController of a soldier or sage
+     * @param enemies the enemies rc can see
+     * @return
+     * @throws GameActionException
+     */
+    static boolean retreatToRepair(RobotController rc, RobotInfo[] enemies) throws GameActionException {
+        int maxHealth = rc.getType().health;
+        if (!retreating && rc.getHealth() * 100 < maxHealth * SOLDIER_RETREAT_HEALTH_PERCENT) {
+            retreating = true;
+            soldierObjective = rc.getLocation();
+        } else if (retreating && rc.getHealth() * 100 >= maxHealth * SOLDIER_HEALED_HEALTH_PERCENT) {
+            retreating = false;
+        }
+
+        if (!retreating && soldierObjective == null) {
+            return false;
+        }
+
+        // Keep shooting on the way
+        attackBestTarget(rc, enemies);
+
+        if (retreating) {
+            int archonIndex = getNearestLivingArchonIndex(rc);
+            if (archonIndex == -1) {
+                // No archon left to repair us, so fight on
+                retreating = false;
+                soldierObjective = null;
+                return false;
+            }
+
+            MapLocation archonLoc = getLocationFromIndex(rc, archonIndex);
+            if (rc.getLocation().distanceSquaredTo(archonLoc) > RobotType.ARCHON.actionRadiusSquared / 2) {
+                tryMove(rc, rc.getLocation().directionTo(archonLoc));
+            }
+            return true;
+        }
 
+        // We are healed, so go back to where we were unless a fight finds us first
+        for (RobotInfo enemy : enemies) {
+            if (isAttacker(enemy)) {
+                soldierObjective = null;
+                return false;
+            }
+        }
+        if (rc.getLocation().distanceSquaredTo(soldierObjective) <= SOLDIER_RETURNED_DIST) {
+            soldierObjective = null;
+            return false;
+        }
+        tryMove(rc, rc.getLocation().directionTo(soldierObjective));
         return true;
     }
 
@@ -885,15 +2458,22 @@ public strictfp class RobotPlayer {
         Team opponent = rc.getTeam().opponent();
         RobotInfo[] enemiesWeSee = rc.senseNearbyRobots(visionRadius, opponent);
 
-        // Attack enemies in order according to getAttackPriority
-        PriorityQueue<RobotInfo> attackPriority = getAttackPriority(rc);
-        while (rc.isActionReady() && !attackPriority.isEmpty()) {
-            RobotInfo currAttack = attackPriority.poll();
-            while (rc.canAttack(currAttack.getLocation()) && currAttack.getHealth() > 0) {
-                rc.attack(currAttack.getLocation());
+        // If we are badly damaged, go get repaired at an archon and come back
+        if (retreatToRepair(rc, enemiesWeSee)) {
+            return;
+        }
+
+        // If we see enemies that can fight back, let the micro pick where to stand and whom to attack
+        for (RobotInfo enemy : enemiesWeSee) {
+            if (isAttacker(enemy)) {
+                combatMicro(rc, enemiesWeSee);
+                return;
             }
         }
 
+        // Attack the best enemy according to getBestAttackTarget
+        attackBestTarget(rc, enemiesWeSee);
+
         // Get lists of all types of enemies we see
         List<Integer> enemyArchonsWeSee = new ArrayList();
         List<Integer> enemyMinersWeSee = new ArrayList<>();
@@ -903,10 +2483,6 @@ public strictfp class RobotPlayer {
                 enemyArchonsWeSee.add(i);
             } else if (enemy.getType() == RobotType.MINER) {
                 enemyMinersWeSee.add(i);
-            } else if (enemy.getType() == RobotType.SOLDIER) {
-                // If we see a soldier, do not move. Need to save as many actions as
-                // possible to win the 1 v 1
-                return;
             }
         }
 
@@ -958,4 +2534,147 @@ public strictfp class RobotPlayer {
             }
         }
     }
+
+    /**
+     * Causes the sage at rc to act on enemies in its action radius with whichever of a direct attack,
+     * Charge or Fury deals the most total damage. Charge deals its sagePercentage of max health to
+     * enemy droids in the action radius, and Fury does the same to enemy buildings in turret mode.
+     * Damage against a robot is capped at its health.
+     * Scores all three options in one pass over enemies without allocating.
+     * @param rc a RobotController of a sage whose action is ready
+     * @param enemies the enemies rc can see
+     * @throws GameActionException
+     */
+    static void sageAct(RobotController rc, RobotInfo[] enemies) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        int actionRadius = rc.getType().actionRadiusSquared;
+        int chargeDamage = 0;
+        int furyDamage = 0;
+        for (RobotInfo enemy : enemies) {
+            if (myLoc.distanceSquaredTo(enemy.getLocation()) > actionRadius) {
+                continue;
+            }
+
+            RobotType type = enemy.getType();
+            int health = enemy.getHealth();
+            if (!type.isBuilding()) {
+                chargeDamage += Math.min(health, (int) (type.health * AnomalyType.CHARGE.sagePercentage));
+            } else if (enemy.getMode() == RobotMode.TURRET) {
+                furyDamage += Math.min(health, (int) (type.health * AnomalyType.FURY.sagePercentage));
+            }
+        }
+
+        RobotInfo target = getBestAttackTarget(rc, enemies);
+        int attackDamage = target == null ? 0 : Math.min(target.getHealth(), rc.getType().damage);
+        if (attackDamage == 0 && chargeDamage == 0 && furyDamage == 0) {
+            return;
+        }
+
+        if (chargeDamage > attackDamage && chargeDamage >= furyDamage && rc.canEnvision(AnomalyType.CHARGE)) {
+            rc.envision(AnomalyType.CHARGE);
+        } else if (furyDamage > attackDamage && rc.canEnvision(AnomalyType.FURY)) {
+            rc.envision(AnomalyType.FURY);
+        } else if (target != null && rc.canAttack(target.getLocation())) {
+            attackAndShareTarget(rc, target);
+        }
+    }
+
+    /**
+     * Run a single turn for a Sage.
+     * This code is wrapped inside the infinite loop in run(), so it is called once per turn.
+     */
+    static void runSage(RobotController rc) throws GameActionException {
+        RobotInfo[] enemiesWeSee = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam().opponent());
+
+        // Sages are expensive, so get them repaired instead of trading them away
+        if (retreatToRepair(rc, enemiesWeSee)) {
+            return;
+        }
+
+        // Fight anything we see, keeping out of reach while our action cools down
+        if (enemiesWeSee.length > 0) {
+            combatMicro(rc, enemiesWeSee);
+            return;
+        }
+
+        // With no enemies in sight, help the nearest archon under attack, else follow the default move
+        int nearestArchonIndex = getNearestArchonIndex(rc);
+        if (getArchonThreatLevel(rc, nearestArchonIndex) != OUR_ARCHON_IS_SAFE) {
+            MapLocation nearestArchon = getLocationFromIndex(rc, nearestArchonIndex);
+            if (rc.getLocation().distanceSquaredTo(nearestArchon) > SHIELD_ARCHON_MAX_DISTANCE) {
+                tryMove(rc, rc.getLocation().directionTo(nearestArchon));
+                return;
+            }
+        }
+        tryMove(rc, getDefaultDirection(rc));
+    }
+
+    /**
+     * Returns where a portable watchtower at rc should go: the nearest threatened archon or sector
+     * engagement within WATCHTOWER_THREAT_MAX_DIST, or null if there is no threat nearby.
+     * @param rc a RobotController of a watchtower
+     * @return
+     * @throws GameActionException
+     */
+    static MapLocation getWatchtowerThreatLocation(RobotController rc) throws GameActionException {
+        MapLocation myLoc = rc.getLocation();
+        int nearestArchonIndex = getNearestArchonIndex(rc);
+        MapLocation nearestArchon = getLocationFromIndex(rc, nearestArchonIndex);
+        if (getArchonThreatLevel(rc, nearestArchonIndex) != OUR_ARCHON_IS_SAFE
+                && myLoc.distanceSquaredTo(nearestArchon) <= WATCHTOWER_THREAT_MAX_DIST) {
+            return nearestArchon;
+        }
+
+        MapLocation engagement = getNearestFocusFireLocation(rc);
+        if (engagement != null && myLoc.distanceSquaredTo(engagement) <= WATCHTOWER_THREAT_MAX_DIST) {
+            return engagement;
+        }
+        return null;
+    }
+
+    /**
+     * Run a single turn for a Watchtower.
+     * In turret mode the watchtower attacks with the shared target scoring. It packs up into portable
+     * mode when a threat appears nearby that it cannot see, and sets back up as a turret once enemies
+     * come into view or it reaches where it was going. With no threat posted it stays where it is, so
+     * that the archon that asked for it keeps its defense.
+     * This code is wrapped inside the infinite loop in run(), so it is called once per turn.
+     */
+    static void runWatchtower(RobotController rc) throws GameActionException {
+        RobotInfo[] enemiesWeSee = rc.senseNearbyRobots(rc.getType().visionRadiusSquared, rc.getTeam().opponent());
+        if (rc.getHealth() < rc.getType().health && rc.getMode() != RobotMode.PORTABLE) {
+            postBuilderTask(rc, BUILDER_TASK_REPAIR, rc.getLocation());
+        }
+
+        RobotMode mode = rc.getMode();
+        if (mode == RobotMode.TURRET) {
+            if (enemiesWeSee.length > 0) {
+                attackBestTarget(rc, enemiesWeSee);
+                return;
+            }
+
+            MapLocation threat = getWatchtowerThreatLocation(rc);
+            if (threat != null && rc.getLocation().distanceSquaredTo(threat) > WATCHTOWER_SETTLE_DIST && rc.canTransform()) {
+                watchtowerDestination = threat;
+                rc.transform();
+            }
+        } else if (mode == RobotMode.PORTABLE) {
+            if (watchtowerDestination == null) {
+                watchtowerDestination = getWatchtowerThreatLocation(rc);
+            }
+
+            boolean arrived = watchtowerDestination == null
+                    || rc.getLocation().distanceSquaredTo(watchtowerDestination) <= WATCHTOWER_SETTLE_DIST;
+            if (enemiesWeSee.length > 0 || arrived) {
+                // Set up as a turret to start shooting
+                if (rc.canTransform()) {
+                    rc.transform();
+                    watchtowerDestination = null;
+                }
+                return;
+            }
+
+            tryMove(rc, rc.getLocation().directionTo(watchtowerDestination));
+        }
+    }
 }
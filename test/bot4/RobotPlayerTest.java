@@ -0,0 +1,236 @@
+package bot4;
+
+import static org.junit.Assert.*;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+import testworld.SimRobot;
+import testworld.World;
+
+public class RobotPlayerTest {
+
+	@Before
+	public void resetStatics() {
+		// Every test shares one loaded RobotPlayer, so clear the state a robot would start with
+		RobotPlayer.turnCount = 0;
+		RobotPlayer.myArchonIndex = -1;
+		RobotPlayer.minerHome = null;
+		RobotPlayer.numKnownLeadTiles = 0;
+		// runMiner makes this on a miner's first turn, but the tests call the miner's steps directly
+		RobotPlayer.knownLeadSlots = new int[GameConstants.MAP_MAX_WIDTH * GameConstants.MAP_MAX_HEIGHT];
+		RobotPlayer.archonDestination = null;
+		RobotPlayer.archonStuckTurns = 0;
+		RobotPlayer.archonRelocateTurns = 0;
+		RobotPlayer.buildSite = null;
+	}
+
+	@Test
+	public void testAttackPrefersThreatsOverEconomy() throws GameActionException {
+		World world = new World(20, 20);
+		RobotController rc = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 5, 5));
+		world.addRobot(RobotType.MINER, Team.B, 6, 5);
+		SimRobot soldier = world.addRobot(RobotType.SOLDIER, Team.B, 7, 5);
+
+		RobotInfo target = RobotPlayer.getBestAttackTarget(rc, rc.senseNearbyRobots(-1, Team.B));
+		assertEquals(soldier.id, target.getID());
+	}
+
+	@Test
+	public void testAttackFinishesKillsFirst() throws GameActionException {
+		World world = new World(20, 20);
+		RobotController rc = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 5, 5));
+		world.addRobot(RobotType.SOLDIER, Team.B, 7, 5);
+		SimRobot miner = world.addRobot(RobotType.MINER, Team.B, 6, 6);
+		miner.health = 1;
+
+		RobotInfo target = RobotPlayer.getBestAttackTarget(rc, rc.senseNearbyRobots(-1, Team.B));
+		assertEquals(miner.id, target.getID());
+	}
+
+	@Test
+	public void testUpgradedWatchtowerSeesItsKills() throws GameActionException {
+		World world = new World(20, 20);
+		SimRobot tower = world.addRobot(RobotType.WATCHTOWER, Team.A, 5, 5);
+		tower.mode = RobotMode.TURRET;
+		tower.level = 3;
+		RobotController rc = world.controller(tower);
+		world.addRobot(RobotType.SOLDIER, Team.B, 7, 5);
+		// Only a level 3 tower can kill this miner in one shot
+		SimRobot miner = world.addRobot(RobotType.MINER, Team.B, 6, 6);
+		miner.health = RobotType.WATCHTOWER.getDamage(3);
+
+		RobotInfo target = RobotPlayer.getBestAttackTarget(rc, rc.senseNearbyRobots(-1, Team.B));
+		assertEquals(miner.id, target.getID());
+	}
+
+	@Test
+	public void testMicroKeepsAttackersWhenCapped() throws GameActionException {
+		World world = new World(20, 20);
+		RobotController rc = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 10, 10));
+		// More miners than the cap, all sensed before the soldiers
+		for (int i = 0; i < RobotPlayer.MICRO_MAX_ENEMIES + 3; i++) {
+			world.addRobot(RobotType.MINER, Team.B, 7 + i % 7, 7 + i / 7);
+		}
+		SimRobot near = world.addRobot(RobotType.SOLDIER, Team.B, 10, 13);
+		SimRobot far = world.addRobot(RobotType.SOLDIER, Team.B, 14, 12);
+
+		RobotInfo[] enemies = rc.senseNearbyRobots(-1, Team.B);
+		assertEquals(RobotPlayer.MICRO_MAX_ENEMIES, RobotPlayer.selectMicroEnemies(rc.getLocation(), enemies));
+		boolean sawNear = false;
+		boolean sawFar = false;
+		for (int i = 0; i < RobotPlayer.MICRO_MAX_ENEMIES; i++) {
+			sawNear |= RobotPlayer.microEnemies[i].getID() == near.id;
+			sawFar |= RobotPlayer.microEnemies[i].getID() == far.id;
+		}
+		assertTrue(sawNear);
+		assertTrue(sawFar);
+	}
+
+	@Test
+	public void testFocusFireTargetIsShared() throws GameActionException {
+		World world = new World(30, 30);
+		RobotController shooter = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 2, 2));
+		RobotController friend = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 4, 4));
+		SimRobot enemy = world.addRobot(RobotType.SOLDIER, Team.B, 5, 2);
+
+		RobotPlayer.attackAndShareTarget(shooter, enemy.toRobotInfo());
+		assertEquals(enemy.id, RobotPlayer.readFocusFireTarget(friend));
+	}
+
+	@Test
+	public void testMinerLeavesLeadToRegenerate() throws GameActionException {
+		World world = new World(20, 20).setLead(5, 5, 30);
+		world.setBehavior(world.addRobot(RobotType.MINER, Team.A, 5, 5), RobotPlayer::mineLeadSustainably);
+		world.runRounds(15);
+
+		assertEquals(RobotPlayer.MINIMUM_LEAD, world.getLead(5, 5));
+	}
+
+	@Test
+	public void testMinerTakesEverythingAtTheEnd() throws GameActionException {
+		World world = new World(20, 20).setLead(5, 5, 3).setRound(GameConstants.GAME_MAX_NUMBER_OF_ROUNDS);
+		world.setBehavior(world.addRobot(RobotType.MINER, Team.A, 5, 5), RobotPlayer::mineLeadSustainably);
+		world.runRound();
+
+		assertEquals(0, world.getLead(5, 5));
+	}
+
+	@Test
+	public void testMinerForgetsLeadMinedOutByOthers() throws GameActionException {
+		World world = new World(20, 20).setLead(8, 5, 30);
+		RobotController rc = world.controller(world.addRobot(RobotType.MINER, Team.A, 5, 5));
+		RobotPlayer.rememberVisibleLead(rc);
+		assertEquals(new MapLocation(8, 5), RobotPlayer.getBestLeadTarget(rc));
+
+		// Someone else empties the tile, and empty tiles don't regenerate
+		world.setLead(8, 5, 0).setRound(100);
+		RobotPlayer.rememberVisibleLead(rc);
+		assertEquals(0, RobotPlayer.numKnownLeadTiles);
+		assertNull(RobotPlayer.getBestLeadTarget(rc));
+	}
+
+	@Test
+	public void testArchonPublishesThreatAndBuildsOneDefender() throws GameActionException {
+		World world = new World(20, 20).setTeamLead(Team.A, 1000);
+		RobotController rc = world.controller(world.addRobot(RobotType.ARCHON, Team.A, 5, 5));
+		world.addRobot(RobotType.SOLDIER, Team.B, 9, 5);
+
+		RobotPlayer.putArchonLocationInComms(rc);
+		assertTrue(RobotPlayer.defendIfEnemies(rc));
+		assertTrue(RobotPlayer.getArchonThreatLevel(rc, RobotPlayer.myArchonIndex) > 0);
+		assertEquals(Direction.EAST, RobotPlayer.getArchonThreatBearing(rc, RobotPlayer.myArchonIndex));
+		assertEquals(1, world.getRobots(Team.A, RobotType.SOLDIER).size());
+	}
+
+	@Test
+	public void testArchonSetsUpNextToATakenDestination() throws GameActionException {
+		World world = new World(20, 20);
+		SimRobot archon = world.addRobot(RobotType.ARCHON, Team.A, 5, 5);
+		archon.mode = RobotMode.PORTABLE;
+		world.addRobot(RobotType.MINER, Team.A, 6, 5);
+		RobotController rc = world.controller(archon);
+		RobotPlayer.putArchonLocationInComms(rc);
+		RobotPlayer.archonDestination = new MapLocation(6, 5);
+
+		assertTrue(RobotPlayer.relocateArchon(rc));
+		assertEquals(RobotMode.TURRET, archon.mode);
+		assertEquals(new MapLocation(5, 5), archon.location);
+	}
+
+	@Test
+	public void testArchonGivesUpRelocatingAfterMaxTurns() throws GameActionException {
+		World world = new World(20, 20);
+		SimRobot archon = world.addRobot(RobotType.ARCHON, Team.A, 5, 5);
+		archon.mode = RobotMode.PORTABLE;
+		RobotController rc = world.controller(archon);
+		RobotPlayer.putArchonLocationInComms(rc);
+		RobotPlayer.archonDestination = new MapLocation(8, 5);
+		RobotPlayer.archonRelocateTurns = RobotPlayer.ARCHON_RELOCATE_MAX_TURNS;
+
+		assertTrue(RobotPlayer.relocateArchon(rc));
+		assertEquals(RobotMode.TURRET, archon.mode);
+	}
+
+	@Test
+	public void testArchonOnlyAsksForWatchtowerAgainstHeavyAttack() throws GameActionException {
+		World world = new World(20, 20);
+		RobotController rc = world.controller(world.addRobot(RobotType.ARCHON, Team.A, 5, 5));
+		RobotPlayer.putArchonLocationInComms(rc);
+
+		// A lone scout isn't worth a watchtower
+		world.addRobot(RobotType.SOLDIER, Team.B, 9, 5);
+		RobotPlayer.defendIfEnemies(rc);
+		assertEquals(-1, getBuilderTaskIndex(rc, RobotPlayer.BUILDER_TASK_WATCHTOWER));
+
+		world.addRobot(RobotType.SOLDIER, Team.B, 9, 6);
+		world.addRobot(RobotType.SOLDIER, Team.B, 9, 4);
+		world.addRobot(RobotType.SOLDIER, Team.B, 8, 7);
+		RobotPlayer.defendIfEnemies(rc);
+		assertTrue(getBuilderTaskIndex(rc, RobotPlayer.BUILDER_TASK_WATCHTOWER) != -1);
+	}
+
+	@Test
+	public void testWatchtowerGoesNextToSurroundedArchon() throws GameActionException {
+		World world = new World(20, 20);
+		RobotController archon = world.controller(world.addRobot(RobotType.ARCHON, Team.A, 5, 5));
+		RobotController builder = world.controller(world.addRobot(RobotType.BUILDER, Team.A, 7, 7));
+		world.setRubble(4, 4, 0);
+		for (Direction dir : Direction.allDirections()) {
+			MapLocation loc = new MapLocation(5, 5).add(dir);
+			if (!loc.equals(new MapLocation(4, 4)) && dir != Direction.CENTER) {
+				world.setRubble(loc.x, loc.y, 20);
+			}
+		}
+		RobotPlayer.putArchonLocationInComms(archon);
+		RobotPlayer.writeArchonThreat(archon, RobotPlayer.myArchonIndex, RobotPlayer.WATCHTOWER_THREAT_LEVEL, Direction.CENTER);
+		RobotPlayer.postBuilderTask(archon, RobotPlayer.BUILDER_TASK_WATCHTOWER, archon.getLocation());
+
+		int index = getBuilderTaskIndex(builder, RobotPlayer.BUILDER_TASK_WATCHTOWER);
+		RobotPlayer.doBuildTask(builder, index, archon.getLocation(), RobotType.WATCHTOWER);
+		assertEquals(new MapLocation(4, 4), RobotPlayer.buildSite);
+	}
+
+	@Test
+	public void testIncomeEstimateSettlesOnPassiveIncome() throws GameActionException {
+		World world = new World(20, 20);
+		world.setBehavior(world.addRobot(RobotType.ARCHON, Team.A, 5, 5), RobotPlayer::updateIncomeEstimate);
+		world.runRounds(100);
+
+		RobotController rc = world.controller(world.getRobots(Team.A, RobotType.ARCHON).get(0));
+		assertEquals(GameConstants.PASSIVE_LEAD_INCREASE * RobotPlayer.INCOME_RATE_SCALE,
+				rc.readSharedArray(RobotPlayer.INCOME_LEAD_RATE_INDEX));
+		assertEquals(0, rc.readSharedArray(RobotPlayer.SPEND_LEAD_RATE_INDEX));
+	}
+
+	// Returns the comms index of a posted builder task of the given type, or -1 if there is none
+	private static int getBuilderTaskIndex(RobotController rc, int taskType) throws GameActionException {
+		for (int i = RobotPlayer.BUILDER_TASK_START_INDEX; i < RobotPlayer.BUILDER_TASK_END_INDEX; i++) {
+			if (rc.readSharedArray(i) != 0 && RobotPlayer.getIntFromIndex(rc, i) == taskType) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,30 @@
+package mapgen;
+
+import battlecode.common.GameConstants;
+import battlecode.world.MapBuilder;
+import org.junit.Test;
+
+public class StressMapGeneratorTest {
+
+	private static final int SEEDS = 50;
+
+	@Test
+	public void testMapsAreValidForManySeeds() {
+		int[] sizes = {GameConstants.MAP_MIN_WIDTH, 33, GameConstants.MAP_MAX_WIDTH};
+		String[] rubble = {"none", "uniform", "clustered"};
+		for (MapBuilder.MapSymmetry symmetry : MapBuilder.MapSymmetry.values()) {
+			for (int width : sizes) {
+				for (int height : sizes) {
+					for (int seed = 0; seed < SEEDS; seed++) {
+						StressMapGenerator generator = new StressMapGenerator(width, height, symmetry, seed);
+						// Cycle through the archon counts and rubble so that every seed tries something different
+						int archons = 1 + seed % StressMapGenerator.MAX_ARCHONS;
+						MapBuilder builder = generator.build("test", seed, rubble[seed % rubble.length],
+								0.4, 0.05, 5, 50, archons);
+						builder.assertIsValid();
+					}
+				}
+			}
+		}
+	}
+}
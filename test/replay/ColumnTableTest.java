@@ -0,0 +1,50 @@
+package replay;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ColumnTableTest {
+
+	@Test
+	public void testWriteThenReadGivesTheSameTable() throws IOException {
+		ColumnTable table = new ColumnTable(Arrays.asList("round", "lead", "deaths"));
+		// Lead falls as well as rises, so its deltas are negative, and the extremes take the most bytes
+		table.addRow(1, 200, 0);
+		table.addRow(2, 75, 3);
+		table.addRow(3, 0, 0);
+		table.addRow(4, Integer.MAX_VALUE, 1);
+		table.addRow(5, Integer.MIN_VALUE, 0);
+		table.addRow(6, -1, 12);
+
+		ColumnTable read = roundTrip(table);
+
+		assertEquals(table.getNames(), read.getNames());
+		assertEquals(6, read.getRows());
+		for (String name : table.getNames()) {
+			assertArrayEquals(table.getColumn(name), read.getColumn(name));
+		}
+	}
+
+	@Test
+	public void testWriteThenReadAnEmptyTable() throws IOException {
+		ColumnTable read = roundTrip(new ColumnTable(Arrays.asList("round", "lead")));
+
+		assertEquals(Arrays.asList("round", "lead"), read.getNames());
+		assertEquals(0, read.getRows());
+		assertArrayEquals(new int[0], read.getColumn("lead"));
+	}
+
+	private static ColumnTable roundTrip(ColumnTable table) throws IOException {
+		File file = File.createTempFile("columns", ".bin");
+		try {
+			table.write(file);
+			return ColumnTable.read(file);
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package replay;
+
+import static org.junit.Assert.*;
+
+import battlecode.schema.BodyType;
+import battlecode.schema.Event;
+import battlecode.schema.EventWrapper;
+import battlecode.schema.GameMap;
+import battlecode.schema.GameWrapper;
+import battlecode.schema.MatchFooter;
+import battlecode.schema.MatchHeader;
+import battlecode.schema.Round;
+import battlecode.schema.SpawnedBodyTable;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+
+public class RoundMetricsTest {
+
+	private static final byte TEAM_A = 1;
+	private static final byte TEAM_B = 2;
+
+	@Test
+	public void testStartingArchonsAreCounted() throws IOException {
+		ColumnTable table = readMetrics(writeReplay());
+
+		// One row per team per round: A then B in round 1, then A then B in round 2
+		assertArrayEquals(new int[]{1, 1, 1, 0}, table.getColumn("archon"));
+		assertArrayEquals(new int[]{1, 0, 1, 0}, table.getColumn("miner"));
+		assertArrayEquals(new int[]{0, 0, 0, 1}, table.getColumn("deaths"));
+		assertArrayEquals(new int[]{3000, 2500, 1800, 0}, table.getColumn("bytecodes"));
+		assertArrayEquals(new int[]{202, 200, 152, 202}, table.getColumn("lead"));
+	}
+
+	// A replay of one match on a map with an archon a side. In round 1 team A's archon builds a
+	// miner, and in round 2 team B's archon dies.
+	private static File writeReplay() throws IOException {
+		FlatBufferBuilder builder = new FlatBufferBuilder();
+		int[] events = new int[4];
+
+		int bodies = bodies(builder, new int[]{10, 11}, new byte[]{TEAM_A, TEAM_B},
+				new byte[]{BodyType.ARCHON, BodyType.ARCHON});
+		int name = builder.createString("fixture");
+		GameMap.startGameMap(builder);
+		GameMap.addName(builder, name);
+		GameMap.addBodies(builder, bodies);
+		int map = GameMap.endGameMap(builder);
+		MatchHeader.startMatchHeader(builder);
+		MatchHeader.addMap(builder, map);
+		MatchHeader.addMaxRounds(builder, 2000);
+		events[0] = event(builder, Event.MatchHeader, MatchHeader.endMatchHeader(builder));
+
+		int spawned = bodies(builder, new int[]{12}, new byte[]{TEAM_A}, new byte[]{BodyType.MINER});
+		events[1] = event(builder, Event.Round, round(builder, 1, spawned, new int[0],
+				new int[]{2, 0}, new int[]{10, 11, 12}, new int[]{2000, 2500, 1000}));
+		events[2] = event(builder, Event.Round, round(builder, 2, 0, new int[]{11},
+				new int[]{-50, 2}, new int[]{10, 12}, new int[]{1000, 800}));
+
+		MatchFooter.startMatchFooter(builder);
+		MatchFooter.addWinner(builder, TEAM_A);
+		MatchFooter.addTotalRounds(builder, 2);
+		events[3] = event(builder, Event.MatchFooter, MatchFooter.endMatchFooter(builder));
+
+		int eventsVector = GameWrapper.createEventsVector(builder, events);
+		GameWrapper.startGameWrapper(builder);
+		GameWrapper.addEvents(builder, eventsVector);
+		builder.finish(GameWrapper.endGameWrapper(builder));
+
+		File file = File.createTempFile("fixture", ".bc22");
+		file.deleteOnExit();
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+			out.write(builder.sizedByteArray());
+		}
+		return file;
+	}
+
+	private static int bodies(FlatBufferBuilder builder, int[] ids, byte[] teams, byte[] types) {
+		int idsVector = SpawnedBodyTable.createRobotIDsVector(builder, ids);
+		int teamsVector = SpawnedBodyTable.createTeamIDsVector(builder, teams);
+		int typesVector = SpawnedBodyTable.createTypesVector(builder, types);
+		SpawnedBodyTable.startSpawnedBodyTable(builder);
+		SpawnedBodyTable.addRobotIDs(builder, idsVector);
+		SpawnedBodyTable.addTeamIDs(builder, teamsVector);
+		SpawnedBodyTable.addTypes(builder, typesVector);
+		return SpawnedBodyTable.endSpawnedBodyTable(builder);
+	}
+
+	// spawned is 0 for a round where nothing spawned
+	private static int round(FlatBufferBuilder builder, int roundID, int spawned, int[] died,
+							 int[] leadChanges, int[] bytecodeIDs, int[] bytecodes) {
+		int teamsVector = Round.createTeamIDsVector(builder, new int[]{TEAM_A, TEAM_B});
+		int leadVector = Round.createTeamLeadChangesVector(builder, leadChanges);
+		int goldVector = Round.createTeamGoldChangesVector(builder, new int[]{0, 0});
+		int diedVector = Round.createDiedIDsVector(builder, died);
+		int bytecodeIDsVector = Round.createBytecodeIDsVector(builder, bytecodeIDs);
+		int bytecodesVector = Round.createBytecodesUsedVector(builder, bytecodes);
+		Round.startRound(builder);
+		Round.addTeamIDs(builder, teamsVector);
+		Round.addTeamLeadChanges(builder, leadVector);
+		Round.addTeamGoldChanges(builder, goldVector);
+		if (spawned != 0) {
+			Round.addSpawnedBodies(builder, spawned);
+		}
+		Round.addDiedIDs(builder, diedVector);
+		Round.addBytecodeIDs(builder, bytecodeIDsVector);
+		Round.addBytecodesUsed(builder, bytecodesVector);
+		Round.addRoundID(builder, roundID);
+		return Round.endRound(builder);
+	}
+
+	private static int event(FlatBufferBuilder builder, byte type, int event) {
+		EventWrapper.startEventWrapper(builder);
+		EventWrapper.addEType(builder, type);
+		EventWrapper.addE(builder, event);
+		return EventWrapper.endEventWrapper(builder);
+	}
+
+	private static ColumnTable readMetrics(File replay) throws IOException {
+		RoundMetrics metrics = new RoundMetrics();
+		ReplayReader.read(replay, metrics);
+		return metrics.getTable();
+	}
+}
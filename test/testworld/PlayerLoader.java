@@ -0,0 +1,97 @@
+package testworld;
+
+import battlecode.common.GameActionException;
+import battlecode.common.RobotController;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes behaviors that give every robot its own copy of a bot package, like the engine does.
+ * Our players keep a lot of state in static fields, so robots that share one loaded RobotPlayer
+ * would see each other's state. Use this for scenarios with more than one robot of a type.
+ */
+public class PlayerLoader {
+
+    /**
+     * Returns a behavior that calls the static method packageName.RobotPlayer.methodName(rc)
+     * each turn, in a separate copy of the package for each robot.
+     *
+     * @param packageName the bot package, like "bot4"
+     * @param methodName a static method taking a RobotController, like "runMiner" or "run"
+     */
+    public static RobotBehavior isolated(String packageName, String methodName) {
+        Map<Integer, Method> methods = new HashMap<>();
+        return rc -> {
+            Method method = methods.get(rc.getID());
+            if (method == null) {
+                method = loadMethod(packageName, methodName);
+                methods.put(rc.getID(), method);
+            }
+            try {
+                method.invoke(null, rc);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof GameActionException) {
+                    throw (GameActionException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static Method loadMethod(String packageName, String methodName) {
+        try {
+            Class<?> shared = Class.forName(packageName + ".RobotPlayer");
+            URL classes = shared.getProtectionDomain().getCodeSource().getLocation();
+            ClassLoader loader = new PackageFirstLoader(packageName, classes, PlayerLoader.class.getClassLoader());
+            Method method = loader.loadClass(packageName + ".RobotPlayer")
+                    .getDeclaredMethod(methodName, RobotController.class);
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't load " + packageName + ".RobotPlayer." + methodName, e);
+        }
+    }
+
+    /**
+     * Loads the bot package's own classes itself and leaves everything else, including the
+     * battlecode API, to the parent so the types still match.
+     */
+    private static class PackageFirstLoader extends URLClassLoader {
+
+        private final String prefix;
+
+        PackageFirstLoader(String packageName, URL classes, ClassLoader parent) {
+            super(new URL[]{classes}, parent);
+            prefix = packageName + ".";
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(prefix)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    loaded = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+}
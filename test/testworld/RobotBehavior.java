@@ -0,0 +1,13 @@
+package testworld;
+
+import battlecode.common.GameActionException;
+import battlecode.common.RobotController;
+
+/**
+ * One turn of a simulated robot. Usually a reference to a bot's per-type method, like
+ * {@code RobotPlayer::runMiner}, or a behavior made by {@link PlayerLoader}.
+ */
+public interface RobotBehavior {
+
+    void turn(RobotController rc) throws GameActionException;
+}
@@ -0,0 +1,640 @@
+package testworld;
+
+import battlecode.common.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers RobotController calls for one robot in a {@link World}. Every method is implemented
+ * directly, so an engine update that adds a method to RobotController fails to compile here
+ * instead of failing inside a bot that swallows exceptions.
+ */
+class SimController implements RobotController {
+
+    private final World world;
+    private final SimRobot robot;
+
+    SimController(World world, SimRobot robot) {
+        this.world = world;
+        this.robot = robot;
+    }
+
+    @Override
+    public String toString() {
+        return "RobotController for " + robot;
+    }
+
+    private static GameActionException cantDoThat(String message) {
+        return new GameActionException(GameActionExceptionType.CANT_DO_THAT, message);
+    }
+
+    private static RobotInfo info(SimRobot other) {
+        return other == null ? null : other.toRobotInfo();
+    }
+
+    private int countRobots(RobotType type) {
+        int count = 0;
+        for (SimRobot other : world.robots.values()) {
+            if (other.team == robot.team && (type == null || other.type == type)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean inActionRange(MapLocation loc) {
+        return robot.location.distanceSquaredTo(loc) <= robot.type.actionRadiusSquared;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Game and robot state
+    // ------------------------------------------------------------------------------------------
+
+    @Override
+    public int getRoundNum() {
+        return world.roundNum;
+    }
+
+    @Override
+    public int getMapWidth() {
+        return world.width;
+    }
+
+    @Override
+    public int getMapHeight() {
+        return world.height;
+    }
+
+    @Override
+    public int getRobotCount() {
+        return countRobots(null);
+    }
+
+    @Override
+    public int getArchonCount() {
+        return countRobots(RobotType.ARCHON);
+    }
+
+    @Override
+    public int getTeamLeadAmount(Team team) {
+        return world.teamLead[team.ordinal()];
+    }
+
+    @Override
+    public int getTeamGoldAmount(Team team) {
+        return world.teamGold[team.ordinal()];
+    }
+
+    @Override
+    public int getID() {
+        return robot.id;
+    }
+
+    @Override
+    public Team getTeam() {
+        return robot.team;
+    }
+
+    @Override
+    public RobotType getType() {
+        return robot.type;
+    }
+
+    @Override
+    public MapLocation getLocation() {
+        return robot.location;
+    }
+
+    @Override
+    public int getHealth() {
+        return robot.health;
+    }
+
+    @Override
+    public int getLevel() {
+        return robot.level;
+    }
+
+    @Override
+    public RobotMode getMode() {
+        return robot.mode;
+    }
+
+    @Override
+    public AnomalyScheduleEntry[] getAnomalySchedule() {
+        return new AnomalyScheduleEntry[0];
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Sensing
+    // ------------------------------------------------------------------------------------------
+
+    private boolean canSense(MapLocation loc) {
+        return world.onTheMap(loc) && robot.location.distanceSquaredTo(loc) <= robot.type.visionRadiusSquared;
+    }
+
+    private MapLocation checkSense(MapLocation loc) throws GameActionException {
+        if (!canSense(loc)) {
+            throw new GameActionException(GameActionExceptionType.CANT_SENSE_THAT, "Can't sense " + loc);
+        }
+        return loc;
+    }
+
+    @Override
+    public boolean onTheMap(MapLocation loc) {
+        return world.onTheMap(loc);
+    }
+
+    @Override
+    public boolean canSenseLocation(MapLocation loc) {
+        return canSense(loc);
+    }
+
+    @Override
+    public boolean canSenseRadiusSquared(int radiusSquared) {
+        return radiusSquared <= robot.type.visionRadiusSquared;
+    }
+
+    @Override
+    public boolean isLocationOccupied(MapLocation loc) throws GameActionException {
+        return world.robotAt(checkSense(loc)) != null;
+    }
+
+    @Override
+    public boolean canSenseRobotAtLocation(MapLocation loc) {
+        return canSense(loc) && world.robotAt(loc) != null;
+    }
+
+    @Override
+    public RobotInfo senseRobotAtLocation(MapLocation loc) throws GameActionException {
+        return info(world.robotAt(checkSense(loc)));
+    }
+
+    @Override
+    public boolean canSenseRobot(int id) {
+        SimRobot other = world.robots.get(id);
+        return other != null && canSense(other.location);
+    }
+
+    @Override
+    public RobotInfo senseRobot(int id) throws GameActionException {
+        if (!canSenseRobot(id)) {
+            throw new GameActionException(GameActionExceptionType.CANT_SENSE_THAT, "Can't sense robot " + id);
+        }
+        return world.robots.get(id).toRobotInfo();
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots() {
+        return senseNearbyRobots(robot.location, -1, null);
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots(int radiusSquared) {
+        return senseNearbyRobots(robot.location, radiusSquared, null);
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots(int radiusSquared, Team team) {
+        return senseNearbyRobots(robot.location, radiusSquared, team);
+    }
+
+    /**
+     * A negative radius means the whole vision radius, and a null team means both teams.
+     */
+    @Override
+    public RobotInfo[] senseNearbyRobots(MapLocation center, int radiusSquared, Team team) {
+        int radius = radiusSquared < 0 || radiusSquared > robot.type.visionRadiusSquared
+                ? robot.type.visionRadiusSquared : radiusSquared;
+        List<RobotInfo> sensed = new ArrayList<>();
+        for (SimRobot other : world.robots.values()) {
+            if (other != robot && (team == null || other.team == team)
+                    && center.distanceSquaredTo(other.location) <= radius && canSense(other.location)) {
+                sensed.add(other.toRobotInfo());
+            }
+        }
+        return sensed.toArray(new RobotInfo[0]);
+    }
+
+    @Override
+    public int senseRubble(MapLocation loc) throws GameActionException {
+        return world.rubble[checkSense(loc).x][loc.y];
+    }
+
+    @Override
+    public int senseLead(MapLocation loc) throws GameActionException {
+        return world.lead[checkSense(loc).x][loc.y];
+    }
+
+    @Override
+    public int senseGold(MapLocation loc) throws GameActionException {
+        return world.gold[checkSense(loc).x][loc.y];
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithLead() {
+        return senseNearbyLocationsWith(world.lead, robot.location, -1, 1);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithLead(int radiusSquared) {
+        return senseNearbyLocationsWith(world.lead, robot.location, radiusSquared, 1);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithLead(MapLocation center, int radiusSquared) {
+        return senseNearbyLocationsWith(world.lead, center, radiusSquared, 1);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithLead(int radiusSquared, int minLead) {
+        return senseNearbyLocationsWith(world.lead, robot.location, radiusSquared, minLead);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithLead(MapLocation center, int radiusSquared, int minLead) {
+        return senseNearbyLocationsWith(world.lead, center, radiusSquared, minLead);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithGold() {
+        return senseNearbyLocationsWith(world.gold, robot.location, -1, 1);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithGold(int radiusSquared) {
+        return senseNearbyLocationsWith(world.gold, robot.location, radiusSquared, 1);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithGold(MapLocation center, int radiusSquared) {
+        return senseNearbyLocationsWith(world.gold, center, radiusSquared, 1);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithGold(int radiusSquared, int minGold) {
+        return senseNearbyLocationsWith(world.gold, robot.location, radiusSquared, minGold);
+    }
+
+    @Override
+    public MapLocation[] senseNearbyLocationsWithGold(MapLocation center, int radiusSquared, int minGold) {
+        return senseNearbyLocationsWith(world.gold, center, radiusSquared, minGold);
+    }
+
+    private MapLocation[] senseNearbyLocationsWith(int[][] resource, MapLocation center, int radiusSquared, int minAmount) {
+        int min = Math.max(1, minAmount);
+        List<MapLocation> found = new ArrayList<>();
+        for (MapLocation loc : getAllLocationsWithinRadiusSquared(center, radiusSquared)) {
+            if (resource[loc.x][loc.y] >= min) {
+                found.add(loc);
+            }
+        }
+        return found.toArray(new MapLocation[0]);
+    }
+
+    /**
+     * A negative radius means the whole vision radius. Only tiles the robot can sense are included.
+     */
+    @Override
+    public MapLocation[] getAllLocationsWithinRadiusSquared(MapLocation center, int radiusSquared) {
+        int radius = radiusSquared < 0 || radiusSquared > robot.type.visionRadiusSquared
+                ? robot.type.visionRadiusSquared : radiusSquared;
+        int reach = (int) Math.sqrt(radius);
+        List<MapLocation> locs = new ArrayList<>();
+        for (int x = center.x - reach; x <= center.x + reach; x++) {
+            for (int y = center.y - reach; y <= center.y + reach; y++) {
+                MapLocation loc = new MapLocation(x, y);
+                if (center.distanceSquaredTo(loc) <= radius && canSense(loc)) {
+                    locs.add(loc);
+                }
+            }
+        }
+        return locs.toArray(new MapLocation[0]);
+    }
+
+    @Override
+    public MapLocation adjacentLocation(Direction dir) {
+        return robot.location.add(dir);
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Cooldowns
+    // ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isActionReady() {
+        return robot.isActionReady();
+    }
+
+    @Override
+    public int getActionCooldownTurns() {
+        return robot.actionCooldown;
+    }
+
+    @Override
+    public boolean isMovementReady() {
+        return robot.isMovementReady();
+    }
+
+    @Override
+    public int getMovementCooldownTurns() {
+        return robot.movementCooldown;
+    }
+
+    @Override
+    public int getTransformCooldownTurns() {
+        return robot.mode == RobotMode.PORTABLE ? robot.movementCooldown : robot.actionCooldown;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Actions
+    // ------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean canMove(Direction dir) {
+        MapLocation to = robot.location.add(dir);
+        return (robot.mode == RobotMode.DROID || robot.mode == RobotMode.PORTABLE) && robot.isMovementReady()
+                && dir != Direction.CENTER && world.onTheMap(to) && world.robotAt(to) == null;
+    }
+
+    @Override
+    public void move(Direction dir) throws GameActionException {
+        if (!canMove(dir)) {
+            throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, robot + " can't move " + dir);
+        }
+        robot.movementCooldown += world.cooldownWithRubble(robot.type.movementCooldown, robot.location);
+        world.moveRobot(robot, robot.location.add(dir));
+    }
+
+    @Override
+    public boolean canBuildRobot(RobotType type, Direction dir) {
+        boolean canMake = (robot.type == RobotType.ARCHON && robot.mode == RobotMode.TURRET && !type.isBuilding())
+                || (robot.type == RobotType.BUILDER && (type == RobotType.LABORATORY || type == RobotType.WATCHTOWER));
+        MapLocation loc = robot.location.add(dir);
+        return canMake && robot.isActionReady() && dir != Direction.CENTER
+                && world.onTheMap(loc) && world.robotAt(loc) == null
+                && world.teamLead[robot.team.ordinal()] >= type.buildCostLead
+                && world.teamGold[robot.team.ordinal()] >= type.buildCostGold;
+    }
+
+    @Override
+    public void buildRobot(RobotType type, Direction dir) throws GameActionException {
+        if (!canBuildRobot(type, dir)) {
+            throw cantDoThat(robot + " can't build " + type + " towards " + dir);
+        }
+        world.teamLead[robot.team.ordinal()] -= type.buildCostLead;
+        world.teamGold[robot.team.ordinal()] -= type.buildCostGold;
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        world.addRobot(type, robot.team, robot.location.add(dir),
+                type.isBuilding() ? RobotMode.PROTOTYPE : RobotMode.DROID);
+    }
+
+    @Override
+    public boolean canAttack(MapLocation loc) {
+        SimRobot target = world.robotAt(loc);
+        return robot.type.canAttack() && (robot.mode == RobotMode.DROID || robot.mode == RobotMode.TURRET)
+                && robot.isActionReady() && inActionRange(loc) && target != null && target.team != robot.team;
+    }
+
+    @Override
+    public void attack(MapLocation loc) throws GameActionException {
+        if (!canAttack(loc)) {
+            throw cantDoThat(robot + " can't attack " + loc);
+        }
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        world.damageRobot(world.robotAt(loc), robot.type.getDamage(robot.level));
+    }
+
+    @Override
+    public boolean canEnvision(AnomalyType anomaly) {
+        return robot.type == RobotType.SAGE && robot.isActionReady()
+                && (anomaly == AnomalyType.CHARGE || anomaly == AnomalyType.FURY);
+    }
+
+    /**
+     * Charge hurts enemy droids and Fury hurts enemy turrets in the sage's action radius, each
+     * by a percent of the target's max health.
+     */
+    @Override
+    public void envision(AnomalyType anomaly) throws GameActionException {
+        if (!canEnvision(anomaly)) {
+            throw cantDoThat(robot + " can't envision " + anomaly);
+        }
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        for (SimRobot other : world.getRobots()) {
+            if (other.team == robot.team || !inActionRange(other.location)) {
+                continue;
+            }
+            boolean hit = anomaly == AnomalyType.CHARGE ? other.mode == RobotMode.DROID : other.mode == RobotMode.TURRET;
+            if (hit) {
+                world.damageRobot(other, (int) (other.type.getMaxHealth(other.level) * anomaly.sagePercentage));
+            }
+        }
+    }
+
+    @Override
+    public boolean canRepair(MapLocation loc) {
+        SimRobot target = world.robotAt(loc);
+        if (target == null || target.team != robot.team || target == robot
+                || !robot.isActionReady() || !inActionRange(loc)) {
+            return false;
+        }
+        if (robot.type == RobotType.ARCHON) {
+            return robot.mode == RobotMode.TURRET && !target.type.isBuilding();
+        }
+        return robot.type == RobotType.BUILDER && target.type.isBuilding();
+    }
+
+    /**
+     * Heals the target. A prototype becomes a turret once it reaches full health.
+     */
+    @Override
+    public void repair(MapLocation loc) throws GameActionException {
+        if (!canRepair(loc)) {
+            throw cantDoThat(robot + " can't repair " + loc);
+        }
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        SimRobot target = world.robotAt(loc);
+        world.damageRobot(target, -Math.abs(robot.type.getHealing(robot.level)));
+        if (target.mode == RobotMode.PROTOTYPE && target.health == target.type.getMaxHealth(target.level)) {
+            target.mode = RobotMode.TURRET;
+        }
+    }
+
+    private boolean canMine(int[][] resource, MapLocation loc) {
+        return robot.type == RobotType.MINER && robot.isActionReady() && world.onTheMap(loc)
+                && inActionRange(loc) && resource[loc.x][loc.y] > 0;
+    }
+
+    private void mine(int[][] resource, int[] teamAmount, MapLocation loc) throws GameActionException {
+        if (!canMine(resource, loc)) {
+            throw cantDoThat(robot + " can't mine " + loc);
+        }
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        resource[loc.x][loc.y]--;
+        teamAmount[robot.team.ordinal()]++;
+    }
+
+    @Override
+    public boolean canMineLead(MapLocation loc) {
+        return canMine(world.lead, loc);
+    }
+
+    @Override
+    public void mineLead(MapLocation loc) throws GameActionException {
+        mine(world.lead, world.teamLead, loc);
+    }
+
+    @Override
+    public boolean canMineGold(MapLocation loc) {
+        return canMine(world.gold, loc);
+    }
+
+    @Override
+    public void mineGold(MapLocation loc) throws GameActionException {
+        mine(world.gold, world.teamGold, loc);
+    }
+
+    @Override
+    public boolean canMutate(MapLocation loc) {
+        SimRobot target = world.robotAt(loc);
+        if (robot.type != RobotType.BUILDER || !robot.isActionReady() || !inActionRange(loc)
+                || target == null || target.team != robot.team || !target.type.isBuilding()
+                || target.mode == RobotMode.PROTOTYPE || target.level >= World.MAX_LEVEL) {
+            return false;
+        }
+        return world.teamLead[robot.team.ordinal()] >= target.type.getLeadMutateCost(target.level + 1)
+                && world.teamGold[robot.team.ordinal()] >= target.type.getGoldMutateCost(target.level + 1);
+    }
+
+    /**
+     * Raises the building a level. It keeps the health it had lost, like in the engine.
+     */
+    @Override
+    public void mutate(MapLocation loc) throws GameActionException {
+        if (!canMutate(loc)) {
+            throw cantDoThat(robot + " can't mutate " + loc);
+        }
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        SimRobot target = world.robotAt(loc);
+        world.teamLead[robot.team.ordinal()] -= target.type.getLeadMutateCost(target.level + 1);
+        world.teamGold[robot.team.ordinal()] -= target.type.getGoldMutateCost(target.level + 1);
+        int missingHealth = target.type.getMaxHealth(target.level) - target.health;
+        target.level++;
+        target.health = target.type.getMaxHealth(target.level) - missingHealth;
+    }
+
+    /**
+     * The test sets one rate for every level.
+     */
+    @Override
+    public int getTransmutationRate() {
+        return world.transmutationRate;
+    }
+
+    @Override
+    public int getTransmutationRate(int laboratoryLevel) {
+        return world.transmutationRate;
+    }
+
+    @Override
+    public boolean canTransmute() {
+        return robot.type == RobotType.LABORATORY && robot.mode == RobotMode.TURRET && robot.isActionReady()
+                && world.teamLead[robot.team.ordinal()] >= world.transmutationRate;
+    }
+
+    @Override
+    public void transmute() throws GameActionException {
+        if (!canTransmute()) {
+            throw cantDoThat(robot + " can't transmute");
+        }
+        robot.actionCooldown += world.cooldownWithRubble(robot.type.actionCooldown, robot.location);
+        world.teamLead[robot.team.ordinal()] -= world.transmutationRate;
+        world.teamGold[robot.team.ordinal()]++;
+    }
+
+    @Override
+    public boolean isTransformReady() {
+        return robot.mode == RobotMode.PORTABLE ? robot.isMovementReady() : robot.isActionReady();
+    }
+
+    @Override
+    public boolean canTransform() {
+        return robot.type.isBuilding() && (robot.mode == RobotMode.TURRET || robot.mode == RobotMode.PORTABLE)
+                && isTransformReady();
+    }
+
+    /**
+     * Switches between turret and portable. The side that is being switched to gets the
+     * transform cooldown, so a robot can't act right after.
+     */
+    @Override
+    public void transform() throws GameActionException {
+        if (!canTransform()) {
+            throw cantDoThat(robot + " can't transform");
+        }
+        int cooldown = world.cooldownWithRubble(GameConstants.TRANSFORM_COOLDOWN, robot.location);
+        if (robot.mode == RobotMode.TURRET) {
+            robot.mode = RobotMode.PORTABLE;
+            robot.movementCooldown += cooldown;
+        } else {
+            robot.mode = RobotMode.TURRET;
+            robot.actionCooldown += cooldown;
+        }
+    }
+
+    @Override
+    public void disintegrate() {
+        world.removeRobot(robot);
+    }
+
+    /**
+     * Resigning takes every robot of the team off the map.
+     */
+    @Override
+    public void resign() {
+        for (SimRobot other : world.getRobots()) {
+            if (other.team == robot.team) {
+                world.removeRobot(other);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Shared array
+    // ------------------------------------------------------------------------------------------
+
+    @Override
+    public int readSharedArray(int index) throws GameActionException {
+        if (index < 0 || index >= GameConstants.SHARED_ARRAY_LENGTH) {
+            throw cantDoThat("Shared array index " + index + " is out of bounds");
+        }
+        return world.sharedArrays[robot.team.ordinal()][index];
+    }
+
+    @Override
+    public void writeSharedArray(int index, int value) throws GameActionException {
+        if (index < 0 || index >= GameConstants.SHARED_ARRAY_LENGTH || value < 0 || value > GameConstants.MAX_SHARED_ARRAY_VALUE) {
+            throw cantDoThat("Can't write " + value + " to shared array index " + index);
+        }
+        world.sharedArrays[robot.team.ordinal()][index] = value;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Debugging
+    // ------------------------------------------------------------------------------------------
+
+    @Override
+    public void setIndicatorString(String string) {
+        robot.indicatorString = string;
+    }
+
+    @Override
+    public void setIndicatorDot(MapLocation loc, int red, int green, int blue) {
+    }
+
+    @Override
+    public void setIndicatorLine(MapLocation start, MapLocation end, int red, int green, int blue) {
+    }
+}
@@ -0,0 +1,52 @@
+package testworld;
+
+import battlecode.common.*;
+
+/**
+ * The state of one robot in a {@link World}. Tests can read and change any of it directly to
+ * script a scenario.
+ */
+public class SimRobot {
+
+    public final int id;
+    public final Team team;
+    public RobotType type;
+    public RobotMode mode;
+    public int level = 1;
+    public int health;
+    public MapLocation location;
+    public int actionCooldown = 0;
+    public int movementCooldown = 0;
+    public boolean alive = true;
+    public RobotBehavior behavior = null;
+    public String indicatorString = "";
+
+    SimRobot(int id, Team team, RobotType type, RobotMode mode, int health, MapLocation location) {
+        this.id = id;
+        this.team = team;
+        this.type = type;
+        this.mode = mode;
+        this.health = health;
+        this.location = location;
+    }
+
+    /**
+     * Returns what other robots see when they sense this robot.
+     */
+    public RobotInfo toRobotInfo() {
+        return new RobotInfo(id, team, type, mode, level, health, location);
+    }
+
+    public boolean isActionReady() {
+        return actionCooldown < GameConstants.COOLDOWNS_PER_TURN;
+    }
+
+    public boolean isMovementReady() {
+        return movementCooldown < GameConstants.COOLDOWNS_PER_TURN;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + id + "(" + team + ") at " + location;
+    }
+}
@@ -0,0 +1,271 @@
+package testworld;
+
+import battlecode.common.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A small in-memory copy of the game for unit tests. It has a grid of rubble, lead and gold,
+ * robots for both teams, each team's resources and shared array, and a round counter.
+ * Nothing here is random. Robots take turns in ID order and IDs are handed out in order, so the
+ * same scenario always plays out the same way.
+ *
+ * It only models the rules our bots care about. Anomalies never happen and the transmutation
+ * rate is whatever the test sets.
+ */
+public class World {
+
+    // The rules come from GameConstants and AnomalyType, like in the engine. These are the only
+    // values the engine doesn't publish.
+    static final int FIRST_ROBOT_ID = 10000;
+    static final int MAX_LEVEL = 3;
+
+    final int width;
+    final int height;
+    final int[][] rubble;
+    final int[][] lead;
+    final int[][] gold;
+    final SimRobot[][] robotGrid;
+    final Map<Integer, SimRobot> robots = new TreeMap<>();
+    final int[] teamLead = new int[2];
+    final int[] teamGold = new int[2];
+    final int[][] sharedArrays = new int[2][GameConstants.SHARED_ARRAY_LENGTH];
+
+    int roundNum = 1;
+    int nextId = FIRST_ROBOT_ID;
+    int transmutationRate = 20;
+
+    public World(int width, int height) {
+        this.width = width;
+        this.height = height;
+        rubble = new int[width][height];
+        lead = new int[width][height];
+        gold = new int[width][height];
+        robotGrid = new SimRobot[width][height];
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Setting up a scenario
+    // ------------------------------------------------------------------------------------------
+
+    public World setRubble(int x, int y, int amount) {
+        rubble[x][y] = amount;
+        return this;
+    }
+
+    public World setLead(int x, int y, int amount) {
+        lead[x][y] = amount;
+        return this;
+    }
+
+    public World setGold(int x, int y, int amount) {
+        gold[x][y] = amount;
+        return this;
+    }
+
+    public World setTeamLead(Team team, int amount) {
+        teamLead[team.ordinal()] = amount;
+        return this;
+    }
+
+    public World setTeamGold(Team team, int amount) {
+        teamGold[team.ordinal()] = amount;
+        return this;
+    }
+
+    public World setTransmutationRate(int rate) {
+        transmutationRate = rate;
+        return this;
+    }
+
+    public World setRound(int round) {
+        roundNum = round;
+        return this;
+    }
+
+    /**
+     * Puts a robot on the map. Droids start as droids and buildings start as finished turrets.
+     *
+     * @return the new robot
+     */
+    public SimRobot addRobot(RobotType type, Team team, int x, int y) {
+        RobotMode mode = type.isBuilding() ? RobotMode.TURRET : RobotMode.DROID;
+        return addRobot(type, team, new MapLocation(x, y), mode);
+    }
+
+    SimRobot addRobot(RobotType type, Team team, MapLocation loc, RobotMode mode) {
+        if (!onTheMap(loc) || robotAt(loc) != null) {
+            throw new IllegalArgumentException("Can't place " + type + " at " + loc);
+        }
+        int health = type.getMaxHealth(1);
+        if (mode == RobotMode.PROTOTYPE) {
+            health = (int) (health * GameConstants.PROTOTYPE_STARTING_HEALTH_MULTIPLIER);
+        }
+        SimRobot robot = new SimRobot(nextId++, team, type, mode, health, loc);
+        robots.put(robot.id, robot);
+        robotGrid[loc.x][loc.y] = robot;
+        return robot;
+    }
+
+    /**
+     * Gives a robot something to do each round.
+     *
+     * @return the same robot, for chaining
+     */
+    public SimRobot setBehavior(SimRobot robot, RobotBehavior behavior) {
+        robot.behavior = behavior;
+        return robot;
+    }
+
+    /**
+     * Makes a RobotController that acts as the given robot.
+     */
+    public RobotController controller(SimRobot robot) {
+        return new SimController(this, robot);
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Running rounds
+    // ------------------------------------------------------------------------------------------
+
+    /**
+     * Plays one round. Cooldowns go down, every living robot with a behavior takes a turn in ID
+     * order, then the end-of-round income and lead regeneration happen.
+     *
+     * @throws GameActionException if any robot's turn throws, so a test fails loudly
+     */
+    public void runRound() throws GameActionException {
+        for (SimRobot robot : getRobots()) {
+            robot.actionCooldown = Math.max(0, robot.actionCooldown - GameConstants.COOLDOWNS_PER_TURN);
+            robot.movementCooldown = Math.max(0, robot.movementCooldown - GameConstants.COOLDOWNS_PER_TURN);
+        }
+        for (SimRobot robot : getRobots()) {
+            if (robot.alive && robot.behavior != null) {
+                robot.behavior.turn(controller(robot));
+            }
+        }
+        teamLead[Team.A.ordinal()] += GameConstants.PASSIVE_LEAD_INCREASE;
+        teamLead[Team.B.ordinal()] += GameConstants.PASSIVE_LEAD_INCREASE;
+        if (roundNum % GameConstants.ADD_LEAD_EVERY_ROUNDS == 0) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (lead[x][y] > 0) {
+                        lead[x][y] += GameConstants.ADD_LEAD;
+                    }
+                }
+            }
+        }
+        roundNum++;
+    }
+
+    /**
+     * Plays the given number of rounds.
+     */
+    public void runRounds(int rounds) throws GameActionException {
+        for (int i = 0; i < rounds; i++) {
+            runRound();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Reading the state back
+    // ------------------------------------------------------------------------------------------
+
+    public int getRound() {
+        return roundNum;
+    }
+
+    public int getRubble(int x, int y) {
+        return rubble[x][y];
+    }
+
+    public int getLead(int x, int y) {
+        return lead[x][y];
+    }
+
+    public int getGold(int x, int y) {
+        return gold[x][y];
+    }
+
+    public int getTeamLead(Team team) {
+        return teamLead[team.ordinal()];
+    }
+
+    public int getTeamGold(Team team) {
+        return teamGold[team.ordinal()];
+    }
+
+    /**
+     * Returns a team's shared array. Changes to it are seen by that team's robots.
+     */
+    public int[] getSharedArray(Team team) {
+        return sharedArrays[team.ordinal()];
+    }
+
+    /**
+     * Returns the living robots in ID order.
+     */
+    public List<SimRobot> getRobots() {
+        return new ArrayList<>(robots.values());
+    }
+
+    /**
+     * Returns the living robots of the given team and type in ID order.
+     */
+    public List<SimRobot> getRobots(Team team, RobotType type) {
+        List<SimRobot> matching = new ArrayList<>();
+        for (SimRobot robot : robots.values()) {
+            if (robot.team == team && robot.type == type) {
+                matching.add(robot);
+            }
+        }
+        return matching;
+    }
+
+    public SimRobot robotAt(MapLocation loc) {
+        return onTheMap(loc) ? robotGrid[loc.x][loc.y] : null;
+    }
+
+    public boolean onTheMap(MapLocation loc) {
+        return loc.x >= 0 && loc.y >= 0 && loc.x < width && loc.y < height;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Changes made by SimController
+    // ------------------------------------------------------------------------------------------
+
+    void moveRobot(SimRobot robot, MapLocation to) {
+        robotGrid[robot.location.x][robot.location.y] = null;
+        robotGrid[to.x][to.y] = robot;
+        robot.location = to;
+    }
+
+    /**
+     * Takes a robot off the map and drops the lead and gold it leaves behind on its tile.
+     */
+    void removeRobot(SimRobot robot) {
+        MapLocation loc = robot.location;
+        robotGrid[loc.x][loc.y] = null;
+        robots.remove(robot.id);
+        robot.alive = false;
+        lead[loc.x][loc.y] += robot.type.getLeadDropped(robot.level);
+        gold[loc.x][loc.y] += robot.type.getGoldDropped(robot.level);
+    }
+
+    void damageRobot(SimRobot robot, int damage) {
+        robot.health = Math.min(robot.type.getMaxHealth(robot.level), robot.health - damage);
+        if (robot.health <= 0) {
+            removeRobot(robot);
+        }
+    }
+
+    /**
+     * Returns how many cooldown turns an action costs on a tile, growing with the tile's rubble.
+     */
+    int cooldownWithRubble(int baseCooldown, MapLocation loc) {
+        return baseCooldown * (10 + rubble[loc.x][loc.y]) / 10;
+    }
+}
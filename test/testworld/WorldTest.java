@@ -0,0 +1,70 @@
+package testworld;
+
+import static org.junit.Assert.*;
+
+import battlecode.common.*;
+import org.junit.Test;
+
+public class WorldTest {
+
+	@Test
+	public void testMoveCooldownGrowsWithRubble() throws GameActionException {
+		World world = new World(20, 20).setRubble(5, 5, 30);
+		SimRobot miner = world.addRobot(RobotType.MINER, Team.A, 5, 5);
+		RobotController rc = world.controller(miner);
+
+		rc.move(Direction.NORTH);
+		assertEquals(new MapLocation(5, 6), miner.location);
+		assertEquals(RobotType.MINER.movementCooldown * 4, rc.getMovementCooldownTurns());
+		assertFalse(rc.canMove(Direction.NORTH));
+	}
+
+	@Test
+	public void testLeadRegeneratesAndPassiveIncome() throws GameActionException {
+		World world = new World(20, 20).setLead(3, 3, 10).setLead(4, 4, 0);
+		world.runRounds(20);
+
+		assertEquals(21, world.getRound());
+		assertEquals(10 + GameConstants.ADD_LEAD, world.getLead(3, 3));
+		assertEquals(0, world.getLead(4, 4));
+		assertEquals(20 * GameConstants.PASSIVE_LEAD_INCREASE, world.getTeamLead(Team.A));
+	}
+
+	@Test
+	public void testSharedArrayIsPerTeam() throws GameActionException {
+		World world = new World(20, 20);
+		RobotController a = world.controller(world.addRobot(RobotType.SOLDIER, Team.A, 1, 1));
+		RobotController b = world.controller(world.addRobot(RobotType.SOLDIER, Team.B, 2, 2));
+
+		a.writeSharedArray(7, 1234);
+		assertEquals(1234, a.readSharedArray(7));
+		assertEquals(0, b.readSharedArray(7));
+	}
+
+	@Test
+	public void testAttackKillsAndDropsLead() throws GameActionException {
+		World world = new World(20, 20);
+		SimRobot soldier = world.addRobot(RobotType.SOLDIER, Team.A, 5, 5);
+		SimRobot miner = world.addRobot(RobotType.MINER, Team.B, 6, 5);
+		miner.health = 1;
+
+		world.controller(soldier).attack(miner.location);
+		assertFalse(miner.alive);
+		assertNull(world.robotAt(new MapLocation(6, 5)));
+		assertEquals(RobotType.MINER.getLeadDropped(1), world.getLead(6, 5));
+	}
+
+	@Test
+	public void testIsolatedPlayersKeepTheirOwnState() throws GameActionException {
+		// Each archon claims its own comms slot only if their static fields are separate
+		World world = new World(30, 30).setTeamLead(Team.A, 0);
+		world.setBehavior(world.addRobot(RobotType.ARCHON, Team.A, 5, 5), PlayerLoader.isolated("bot4", "runArchon"));
+		world.setBehavior(world.addRobot(RobotType.ARCHON, Team.A, 20, 20), PlayerLoader.isolated("bot4", "runArchon"));
+		world.runRound();
+
+		int[] comms = world.getSharedArray(Team.A);
+		assertEquals(505, comms[0] % 10000);
+		assertEquals(2020, comms[1] % 10000);
+	}
+
+}
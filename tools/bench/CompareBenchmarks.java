@@ -0,0 +1,93 @@
+package bench;
+
+import runner.Args;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written by the jmh task, benchmark by benchmark. A change is
+ * only marked when the scores differ by more than both error bars together. Started by the
+ * jmhCompare task.
+ */
+public class CompareBenchmarks {
+
+    /**
+     * Reads a JMH CSV file into the score and error of each benchmark and parameter setting.
+     */
+    static Map<String, double[]> read(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        List<String> header = splitCsv(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> fields = splitCsv(line);
+            StringBuilder key = new StringBuilder(fields.get(benchmark).replaceAll("^.*\\.([^.]+\\.[^.]+)$", "$1"));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < fields.size() && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                }
+            }
+            key.append(" (").append(fields.get(unit)).append(')');
+            results.put(key.toString(), new double[]{parse(fields.get(score)), parse(fields.get(error))});
+        }
+        return results;
+    }
+
+    private static double parse(String number) {
+        return number.isEmpty() || number.equals("NaN") ? 0 : Double.parseDouble(number);
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = new Args(argv);
+        File base = new File(args.require("base"));
+        File head = new File(args.require("head"));
+        Map<String, double[]> baseResults = read(base);
+        Map<String, double[]> headResults = read(head);
+
+        System.out.printf("%-55s %12s %12s %8s%n", "Benchmark", base.getName(), head.getName(), "Change");
+        for (Map.Entry<String, double[]> entry : headResults.entrySet()) {
+            double[] after = entry.getValue();
+            double[] before = baseResults.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-55s %12s %12.1f %8s%n", entry.getKey(), "-", after[0], "new");
+                continue;
+            }
+            double change = before[0] == 0 ? 0 : (after[0] - before[0]) / before[0] * 100;
+            boolean significant = Math.abs(after[0] - before[0]) > before[1] + after[1];
+            System.out.printf("%-55s %12.1f %12.1f %+7.1f%%%s%n", entry.getKey(), before[0], after[0], change,
+                    significant ? " *" : "");
+        }
+        System.out.println();
+        System.out.println("* the change is bigger than both error bars together");
+    }
+}
@@ -0,0 +1,284 @@
+package mapgen;
+
+import battlecode.common.GameConstants;
+import battlecode.common.MapLocation;
+import battlecode.world.MapBuilder;
+import runner.Args;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates maps that are as hard on our bots as we can make them: big, with lots of rubble to
+ * path around, lead scattered everywhere to spread the miners out and up to four archons a side
+ * so that the fights get large. The map is written with the engine's own MapBuilder, which
+ * checks that it is valid, into the maps/ directory the run tasks read maps from. Started by
+ * the generateMap task.
+ *
+ * The same arguments and seed always give the same map.
+ */
+public class StressMapGenerator {
+
+    // The spec allows one to four archons per team
+    static final int MAX_ARCHONS = 4;
+    static final int MAX_RUBBLE = 100;
+
+    // Rubble is cleared this far around archons (squared distance) so that they can still build
+    static final int ARCHON_CLEARING_RADIUS_SQUARED = 5;
+
+    // Archons stay this many tiles from the edges and the line of symmetry
+    static final int ARCHON_MARGIN = 2;
+
+    // Every archon gets lead within this squared distance, which is inside its vision
+    static final int ARCHON_LEAD_RADIUS_SQUARED = 13;
+    static final int ARCHON_LEAD_DEPOSITS = 3;
+
+    // How many times the random rubble field is blurred for clustered rubble. More passes make
+    // bigger blobs.
+    static final int CLUSTER_SMOOTHING_PASSES = 3;
+
+    final int width;
+    final int height;
+    final MapBuilder.MapSymmetry symmetry;
+    final Random rng;
+
+    StressMapGenerator(int width, int height, MapBuilder.MapSymmetry symmetry, long seed) {
+        this.width = width;
+        this.height = height;
+        this.symmetry = symmetry;
+        this.rng = new Random(seed);
+    }
+
+    /**
+     * Returns whether a tile is in team A's half of the map, including the tiles on the line of
+     * symmetry.
+     */
+    boolean inFirstHalf(int x, int y) {
+        if (symmetry == MapBuilder.MapSymmetry.HORIZONTAL) {
+            return 2 * y < height;
+        }
+        return 2 * x < width;
+    }
+
+    boolean onMap(MapLocation location) {
+        return location.x >= 0 && location.y >= 0 && location.x < width && location.y < height;
+    }
+
+    /**
+     * Returns the rubble on every tile. "none" leaves the map clear, "uniform" gives every tile a
+     * random amount and "clustered" makes blobs of heavy rubble, covering about density of the
+     * map, with light rubble between them.
+     */
+    int[][] makeRubble(String distribution, double density) {
+        int[][] rubble = new int[width][height];
+        switch (distribution) {
+            case "none":
+                break;
+            case "uniform":
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        rubble[x][y] = rng.nextDouble() < density ? rng.nextInt(MAX_RUBBLE + 1) : 0;
+                    }
+                }
+                break;
+            case "clustered":
+                double[][] field = new double[width][height];
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        field[x][y] = rng.nextDouble();
+                    }
+                }
+                for (int i = 0; i < CLUSTER_SMOOTHING_PASSES; i++) {
+                    field = blur(field);
+                }
+                double threshold = quantile(field, 1 - density);
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        rubble[x][y] = field[x][y] >= threshold
+                                ? MAX_RUBBLE / 2 + rng.nextInt(MAX_RUBBLE / 2 + 1)
+                                : rng.nextInt(MAX_RUBBLE / 5 + 1);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rubble distribution " + distribution
+                        + ", expected none, uniform or clustered");
+        }
+        return rubble;
+    }
+
+    private double[][] blur(double[][] field) {
+        double[][] blurred = new double[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                double sum = 0;
+                int count = 0;
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if (nx >= 0 && ny >= 0 && nx < width && ny < height) {
+                            sum += field[nx][ny];
+                            count++;
+                        }
+                    }
+                }
+                blurred[x][y] = sum / count;
+            }
+        }
+        return blurred;
+    }
+
+    private static double quantile(double[][] field, double q) {
+        List<Double> values = new ArrayList<>();
+        for (double[] column : field) {
+            for (double value : column) {
+                values.add(value);
+            }
+        }
+        values.sort(null);
+        int index = (int) Math.min(values.size() - 1, Math.max(0, Math.round(q * values.size())));
+        return values.get(index);
+    }
+
+    /**
+     * Returns the lead on every tile, on about density of the tiles.
+     */
+    int[][] makeLead(double density, int minLead, int maxLead) {
+        int[][] lead = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (rng.nextDouble() < density) {
+                    lead[x][y] = minLead + rng.nextInt(maxLead - minLead + 1);
+                }
+            }
+        }
+        return lead;
+    }
+
+    /**
+     * Picks team A's archon locations in its half, spread out by keeping the farthest of several
+     * random candidates from the archons already placed. Team B's are the mirror images.
+     */
+    List<MapLocation> placeArchons(int count) {
+        List<MapLocation> archons = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MapLocation best = null;
+            int bestDistance = -1;
+            for (int tries = 0; tries < 50; tries++) {
+                int x = ARCHON_MARGIN + rng.nextInt(width - 2 * ARCHON_MARGIN);
+                int y = ARCHON_MARGIN + rng.nextInt(height - 2 * ARCHON_MARGIN);
+                if (!inFirstHalf(x, y) || !farFromMiddle(x, y)) {
+                    continue;
+                }
+                MapLocation candidate = new MapLocation(x, y);
+                int distance = Integer.MAX_VALUE;
+                for (MapLocation archon : archons) {
+                    distance = Math.min(distance, candidate.distanceSquaredTo(archon));
+                }
+                if (distance > bestDistance && distance > 0) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+            if (best == null) {
+                throw new IllegalArgumentException("No room for " + count + " archons on a " + width + "x" + height + " map");
+            }
+            archons.add(best);
+        }
+        return archons;
+    }
+
+    // Whether a tile is far enough from the line of symmetry that its mirror image is apart from it
+    private boolean farFromMiddle(int x, int y) {
+        if (symmetry == MapBuilder.MapSymmetry.HORIZONTAL) {
+            return 2 * (y + ARCHON_MARGIN) < height;
+        }
+        return 2 * (x + ARCHON_MARGIN) < width;
+    }
+
+    /**
+     * Builds the map. Only team A's half is generated and MapBuilder mirrors it.
+     */
+    MapBuilder build(String name, int seed, String rubbleDistribution, double rubbleDensity,
+                     double leadDensity, int minLead, int maxLead, int archonCount) {
+        int[][] rubble = makeRubble(rubbleDistribution, rubbleDensity);
+        int[][] lead = makeLead(leadDensity, minLead, maxLead);
+        List<MapLocation> archons = placeArchons(archonCount);
+
+        for (MapLocation archon : archons) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (archon.distanceSquaredTo(new MapLocation(x, y)) <= ARCHON_CLEARING_RADIUS_SQUARED) {
+                        rubble[x][y] = 0;
+                    }
+                }
+            }
+            for (int i = 0; i < ARCHON_LEAD_DEPOSITS; i++) {
+                MapLocation deposit;
+                do {
+                    deposit = new MapLocation(archon.x + rng.nextInt(7) - 3, archon.y + rng.nextInt(7) - 3);
+                } while (!onMap(deposit) || deposit.equals(archon)
+                        || archon.distanceSquaredTo(deposit) > ARCHON_LEAD_RADIUS_SQUARED
+                        || !inFirstHalf(deposit.x, deposit.y));
+                lead[deposit.x][deposit.y] = Math.max(lead[deposit.x][deposit.y], maxLead);
+            }
+        }
+        for (MapLocation archon : archons) {
+            lead[archon.x][archon.y] = 0;
+        }
+
+        MapBuilder builder = new MapBuilder(name, width, height, 0, 0, seed);
+        builder.setSymmetry(symmetry);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (inFirstHalf(x, y)) {
+                    builder.setSymmetricRubble(x, y, rubble[x][y]);
+                    builder.setSymmetricLead(x, y, lead[x][y]);
+                }
+            }
+        }
+        for (MapLocation archon : archons) {
+            builder.addSymmetricArchon(archon.x, archon.y);
+        }
+        return builder;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        int size = args.getInt("size", GameConstants.MAP_MAX_WIDTH);
+        int width = args.getInt("width", size);
+        int height = args.getInt("height", size);
+        if (width < GameConstants.MAP_MIN_WIDTH || width > GameConstants.MAP_MAX_WIDTH
+                || height < GameConstants.MAP_MIN_HEIGHT || height > GameConstants.MAP_MAX_HEIGHT) {
+            throw new IllegalArgumentException("Maps must be between " + GameConstants.MAP_MIN_WIDTH + "x"
+                    + GameConstants.MAP_MIN_HEIGHT + " and " + GameConstants.MAP_MAX_WIDTH + "x"
+                    + GameConstants.MAP_MAX_HEIGHT + ", not " + width + "x" + height);
+        }
+        int archons = args.getInt("archons", MAX_ARCHONS);
+        if (archons < 1 || archons > MAX_ARCHONS) {
+            throw new IllegalArgumentException("Each team needs 1 to " + MAX_ARCHONS + " archons, not " + archons);
+        }
+        MapBuilder.MapSymmetry symmetry = MapBuilder.MapSymmetry.valueOf(args.get("symmetry", "rotational").toUpperCase());
+        int seed = args.getInt("seed", 6147);
+        String rubble = args.get("rubble", "clustered");
+        String name = args.get("name", "stress" + width + "x" + height + "-" + rubble + "-" + seed);
+
+        StressMapGenerator generator = new StressMapGenerator(width, height, symmetry, seed);
+        MapBuilder builder = generator.build(name, seed, rubble,
+                args.getDouble("rubble-density", 0.4),
+                args.getDouble("lead-density", 0.05),
+                args.getInt("min-lead", 5),
+                args.getInt("max-lead", 50),
+                archons);
+        builder.assertIsValid();
+
+        String mapDir = args.get("out", "maps");
+        new File(mapDir).mkdirs();
+        builder.saveMap(mapDir);
+        System.out.println("Wrote " + mapDir + "/" + name + ".map22 (" + width + "x" + height + ", "
+                + symmetry.name().toLowerCase() + ", " + rubble + " rubble, " + archons + " archons a side)");
+    }
+}
@@ -0,0 +1,153 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A table of int columns that is stored column by column. Each column is written as varint
+ * deltas from the value above, so columns like the round number or unit counts that change
+ * slowly take about a byte per row before gzip.
+ */
+public class ColumnTable {
+
+    private static final int MAGIC = 0x42434d31;
+
+    private final String[] names;
+    private int[][] columns;
+    private int rows = 0;
+
+    public ColumnTable(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        columns = new int[this.names.length][64];
+    }
+
+    public List<String> getNames() {
+        return Arrays.asList(names);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int get(int column, int row) {
+        return columns[column][row];
+    }
+
+    public int[] getColumn(String name) {
+        return Arrays.copyOf(columns[Arrays.asList(names).indexOf(name)], rows);
+    }
+
+    /**
+     * Adds a row, with one value for every column in order.
+     */
+    public void addRow(int... values) {
+        if (values.length != names.length) {
+            throw new IllegalArgumentException("Expected " + names.length + " values but got " + values.length);
+        }
+        if (rows == columns[0].length) {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], rows * 2);
+            }
+        }
+        for (int c = 0; c < names.length; c++) {
+            columns[c][rows] = values[c];
+        }
+        rows++;
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(rows);
+            out.writeInt(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            for (int[] column : columns) {
+                int previous = 0;
+                for (int row = 0; row < rows; row++) {
+                    writeVarint(out, column[row] - previous);
+                    previous = column[row];
+                }
+            }
+        }
+    }
+
+    public static ColumnTable read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a column table");
+            }
+            int rows = in.readInt();
+            String[] names = new String[in.readInt()];
+            for (int c = 0; c < names.length; c++) {
+                names[c] = in.readUTF();
+            }
+            ColumnTable table = new ColumnTable(Arrays.asList(names));
+            table.rows = rows;
+            table.columns = new int[names.length][Math.max(rows, 1)];
+            for (int[] column : table.columns) {
+                int previous = 0;
+                for (int row = 0; row < rows; row++) {
+                    previous += readVarint(in);
+                    column[row] = previous;
+                }
+            }
+            return table;
+        }
+    }
+
+    public void writeCsv(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println(String.join(",", names));
+            StringBuilder line = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                line.setLength(0);
+                for (int c = 0; c < names.length; c++) {
+                    if (c > 0) {
+                        line.append(',');
+                    }
+                    line.append(columns[c][row]);
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Writes value zigzag encoded, so small negative numbers stay small, 7 bits per byte.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7f) != 0) {
+            out.writeByte((zigzag & 0x7f) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte(zigzag);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            zigzag |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
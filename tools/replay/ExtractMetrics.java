@@ -0,0 +1,79 @@
+package replay;
+
+import runner.Args;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Turns replays into per-round metrics tables, one .metrics file per replay, several replays at
+ * a time. Started by the replayMetrics task.
+ */
+public class ExtractMetrics {
+
+    /**
+     * Returns the replays in the comma separated files and directories.
+     */
+    static List<File> findReplays(List<String> paths) {
+        List<File> replays = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] children = file.listFiles((dir, name) -> name.endsWith(".bc22"));
+            if (children != null) {
+                for (File child : children) {
+                    replays.add(child);
+                }
+            } else if (file.isFile()) {
+                replays.add(file);
+            }
+        }
+        return replays;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        List<File> replays = findReplays(args.getList("replays", "matches"));
+        File outDir = new File(args.get("out", "matches/metrics"));
+        boolean csv = Boolean.parseBoolean(args.get("csv", "false"));
+        int workers = args.getInt("workers", 0);
+        if (workers <= 0) {
+            workers = Runtime.getRuntime().availableProcessors();
+        }
+        outDir.mkdirs();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<String>> done = new ArrayList<>();
+        for (File replay : replays) {
+            done.add(pool.submit(() -> {
+                long start = System.currentTimeMillis();
+                RoundMetrics metrics = new RoundMetrics();
+                ReplayReader.read(replay, metrics);
+                String name = replay.getName().replaceAll("\\.bc22$", "");
+                File out = new File(outDir, name + ".metrics");
+                metrics.getTable().write(out);
+                if (csv) {
+                    metrics.getTable().writeCsv(new File(outDir, name + ".csv"));
+                }
+                return replay.getName() + ": " + metrics.getTable().getRows() + " rows, " + out.length() + " bytes in "
+                        + (System.currentTimeMillis() - start) + "ms";
+            }));
+        }
+
+        int failed = 0;
+        for (int i = 0; i < done.size(); i++) {
+            try {
+                System.out.println(done.get(i).get());
+            } catch (Exception e) {
+                failed++;
+                System.out.println(replays.get(i).getName() + ": failed, " + e.getCause());
+            }
+        }
+        pool.shutdown();
+        System.out.println("Wrote metrics for " + (replays.size() - failed) + " of " + replays.size()
+                + " replays to " + outDir);
+    }
+}
@@ -0,0 +1,23 @@
+package replay;
+
+import battlecode.schema.MatchHeader;
+import battlecode.schema.Round;
+
+/**
+ * Gets the events of a replay from {@link ReplayReader} in the order they happened. The objects
+ * passed in are reused for the next event, so copy anything that is needed later.
+ */
+public interface ReplayListener {
+
+    /**
+     * @param header the match's header, whose map has the robots the match starts with
+     */
+    default void onMatchStart(int match, MatchHeader header) {}
+
+    default void onRound(int match, Round round) {}
+
+    /**
+     * @param winner the team ID of the winner, 1 for team A and 2 for team B
+     */
+    default void onMatchEnd(int match, int winner, int rounds) {}
+}
@@ -0,0 +1,69 @@
+package replay;
+
+import battlecode.schema.Event;
+import battlecode.schema.EventWrapper;
+import battlecode.schema.GameWrapper;
+import battlecode.schema.MatchFooter;
+import battlecode.schema.MatchHeader;
+import battlecode.schema.Round;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a .bc22 replay, which is a gzipped flatbuffer of the game's events, and hands the
+ * events to a listener round by round.
+ *
+ * A flatbuffer can point anywhere in itself, so the decompressed replay has to be in memory
+ * while it is read. Nothing else is: the events are read in place and the same few accessor
+ * objects are reused for every round, so reading a replay costs one buffer however long it is.
+ */
+public class ReplayReader {
+
+    public static void read(File file, ReplayListener listener) throws IOException {
+        GameWrapper game = GameWrapper.getRootAsGameWrapper(ByteBuffer.wrap(decompress(file)));
+        EventWrapper event = new EventWrapper();
+        MatchHeader header = new MatchHeader();
+        Round round = new Round();
+        MatchFooter footer = new MatchFooter();
+
+        int match = -1;
+        for (int i = 0; i < game.eventsLength(); i++) {
+            game.events(event, i);
+            switch (event.eType()) {
+                case Event.MatchHeader:
+                    event.e(header);
+                    match++;
+                    listener.onMatchStart(match, header);
+                    break;
+                case Event.Round:
+                    event.e(round);
+                    listener.onRound(match, round);
+                    break;
+                case Event.MatchFooter:
+                    event.e(footer);
+                    listener.onMatchEnd(match, footer.winner(), footer.totalRounds());
+                    break;
+                default:
+                    // The game header and footer have nothing per round
+            }
+        }
+    }
+
+    private static byte[] decompress(File file) throws IOException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file), 1 << 16)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE / 2, file.length() * 8));
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
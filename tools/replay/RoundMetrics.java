@@ -0,0 +1,128 @@
+package replay;
+
+import battlecode.common.GameConstants;
+import battlecode.schema.BodyType;
+import battlecode.schema.MatchHeader;
+import battlecode.schema.Round;
+import battlecode.schema.SpawnedBodyTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds a row to a {@link ColumnTable} for each team in each round of a replay. A row has the
+ * match, round and team, the team's unit count of every type, the lead and gold it has banked,
+ * how many of its units died that round and the bytecode its units used that round.
+ */
+public class RoundMetrics implements ReplayListener {
+
+    static final int TEAMS = 2;
+
+    private final int numTypes = BodyType.names.length;
+    private final ColumnTable table;
+    private final SpawnedBodyTable spawned = new SpawnedBodyTable();
+
+    // The team index times numTypes plus the type of each living robot, by ID
+    private final Map<Integer, Integer> robots = new HashMap<>();
+    private final int[][] counts = new int[TEAMS][numTypes];
+    private final int[] lead = new int[TEAMS];
+    private final int[] gold = new int[TEAMS];
+    private final int[] deaths = new int[TEAMS];
+    private final int[] bytecodes = new int[TEAMS];
+    private final int[] row;
+
+    public RoundMetrics() {
+        List<String> names = new ArrayList<>();
+        names.add("match");
+        names.add("round");
+        names.add("team");
+        for (int type = 0; type < numTypes; type++) {
+            names.add(BodyType.name(type).toLowerCase());
+        }
+        names.add("lead");
+        names.add("gold");
+        names.add("deaths");
+        names.add("bytecodes");
+        table = new ColumnTable(names);
+        row = new int[names.size()];
+    }
+
+    public ColumnTable getTable() {
+        return table;
+    }
+
+    @Override
+    public void onMatchStart(int match, MatchHeader header) {
+        robots.clear();
+        for (int team = 0; team < TEAMS; team++) {
+            for (int type = 0; type < numTypes; type++) {
+                counts[team][type] = 0;
+            }
+            lead[team] = GameConstants.INITIAL_LEAD_AMOUNT;
+            gold[team] = GameConstants.INITIAL_GOLD_AMOUNT;
+        }
+        // The starting archons are part of the map rather than spawned in a round
+        if (header.map().bodies(spawned) != null) {
+            addRobots(spawned);
+        }
+    }
+
+    @Override
+    public void onRound(int match, Round round) {
+        for (int team = 0; team < TEAMS; team++) {
+            deaths[team] = 0;
+            bytecodes[team] = 0;
+        }
+
+        if (round.spawnedBodies(spawned) != null) {
+            addRobots(spawned);
+        }
+
+        for (int i = 0; i < round.diedIDsLength(); i++) {
+            Integer robot = robots.remove(round.diedIDs(i));
+            if (robot != null) {
+                counts[robot / numTypes][robot % numTypes]--;
+                deaths[robot / numTypes]++;
+            }
+        }
+
+        for (int i = 0; i < round.teamIDsLength(); i++) {
+            int team = round.teamIDs(i) - 1;
+            lead[team] += round.teamLeadChanges(i);
+            gold[team] += round.teamGoldChanges(i);
+        }
+
+        for (int i = 0; i < round.bytecodeIDsLength(); i++) {
+            Integer robot = robots.get(round.bytecodeIDs(i));
+            if (robot != null) {
+                bytecodes[robot / numTypes] += round.bytecodesUsed(i);
+            }
+        }
+
+        for (int team = 0; team < TEAMS; team++) {
+            int c = 0;
+            row[c++] = match;
+            row[c++] = round.roundID();
+            row[c++] = team + 1;
+            for (int type = 0; type < numTypes; type++) {
+                row[c++] = counts[team][type];
+            }
+            row[c++] = lead[team];
+            row[c++] = gold[team];
+            row[c++] = deaths[team];
+            row[c] = bytecodes[team];
+            table.addRow(row);
+        }
+    }
+
+    private void addRobots(SpawnedBodyTable bodies) {
+        for (int i = 0; i < bodies.robotIDsLength(); i++) {
+            int team = bodies.teamIDs(i) - 1;
+            int type = bodies.types(i);
+            robots.put(bodies.robotIDs(i), team * numTypes + type);
+            counts[team][type]++;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package runner;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays a candidate against a baseline until an SPRT decides whether the candidate is at least
+ * elo1 stronger or no more than elo0 stronger, and writes the LLR after every game to a CSV file.
+ * Started by the abTest task.
+ *
+ * Our bots and the engine are deterministic, so playing the same map from the same side twice
+ * tells us nothing new. Each map is played once from each side, and if the test still hasn't
+ * decided by then it is inconclusive and needs more maps.
+ */
+public class AbTest {
+
+    static List<Match> getMatches(String candidate, String baseline, String classLocation, List<String> maps) {
+        List<Match> matches = new ArrayList<>();
+        for (String map : maps) {
+            Match match = new Match(candidate, baseline, classLocation, classLocation, map, 1);
+            matches.add(match);
+            matches.add(match.swapped());
+        }
+        return matches;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        String candidate = args.require("candidate");
+        String baseline = args.require("baseline");
+        List<Match> matches = getMatches(candidate, baseline, args.require("class-location"), args.getList("maps", ""));
+        double elo0 = args.getDouble("elo0", 0);
+        double elo1 = args.getDouble("elo1", 20);
+        Sprt sprt = new Sprt(elo0, elo1, args.getDouble("alpha", 0.05), args.getDouble("beta", 0.05));
+        String outPath = args.get("out", "matches/sprt.csv");
+        System.out.printf("Testing %s against %s with H0: elo <= %.0f, H1: elo >= %.0f, LLR bounds [%.2f, %.2f]%n",
+                candidate, baseline, elo0, elo1, sprt.getLowerBound(), sprt.getUpperBound());
+
+        int[] failed = {0};
+        // Same columns as a batch, plus the state of the test after each game
+        try (PrintWriter out = BatchRunner.openCsv(outPath, MatchResult.CSV_HEADER + ",candidateWon,llr,lower,upper")) {
+            BatchRunner.runWhile(matches.iterator(), BatchRunner.makeRunner(args), BatchRunner.getWorkers(args), result -> {
+                if (result.isError()) {
+                    failed[0]++;
+                    System.out.println(result);
+                    return true;
+                }
+                boolean candidateWon = candidate.equals(result.getWinner());
+                sprt.addResult(candidateWon);
+                out.printf("%s,%b,%.4f,%.4f,%.4f%n", result.toCsvRow(), candidateWon, sprt.getLlr(),
+                        sprt.getLowerBound(), sprt.getUpperBound());
+                out.flush();
+                System.out.printf("%s  LLR %.2f (%d-%d)%n", result, sprt.getLlr(), sprt.getWins(), sprt.getLosses());
+                return sprt.getDecision() == Sprt.Decision.CONTINUE;
+            });
+        }
+
+        System.out.println();
+        System.out.printf("%s vs %s: %d-%d, about %+.0f Elo%n", candidate, baseline, sprt.getWins(), sprt.getLosses(),
+                sprt.getEloEstimate());
+        switch (sprt.getDecision()) {
+            case H1:
+                System.out.printf("H1 accepted: %s is at least %.0f Elo stronger%n", candidate, elo1);
+                break;
+            case H0:
+                System.out.printf("H0 accepted: %s is no more than %.0f Elo stronger%n", candidate, elo0);
+                break;
+            default:
+                System.out.println("Inconclusive: every map was played from both sides before the test decided");
+        }
+        if (failed[0] > 0) {
+            System.out.println(failed[0] + " matches failed and were left out");
+        }
+        System.out.println("LLR after every game written to " + outPath);
+    }
+}
@@ -0,0 +1,61 @@
+package runner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line arguments of the form --name=value, as passed in by the Gradle tasks.
+ */
+public class Args {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public Args(String[] args) {
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals == -1) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+    }
+
+    public boolean has(String name) {
+        String value = values.get(name);
+        return value != null && !value.isEmpty();
+    }
+
+    public String get(String name, String fallback) {
+        return has(name) ? values.get(name) : fallback;
+    }
+
+    public String require(String name) {
+        if (!has(name)) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return values.get(name);
+    }
+
+    public int getInt(String name, int fallback) {
+        return has(name) ? Integer.parseInt(values.get(name).trim()) : fallback;
+    }
+
+    public double getDouble(String name, double fallback) {
+        return has(name) ? Double.parseDouble(values.get(name).trim()) : fallback;
+    }
+
+    /**
+     * Returns the comma separated values of name, or of fallback if name wasn't given.
+     */
+    public List<String> getList(String name, String fallback) {
+        List<String> list = new ArrayList<>();
+        for (String item : get(name, fallback).split(",")) {
+            if (!item.trim().isEmpty()) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,196 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Plays every combination of team pairs, maps and seeds, several matches at a time, and writes
+ * one CSV row per match as soon as it finishes. Started by the runBatch task.
+ */
+public class BatchRunner {
+
+    public static final String DEFAULT_REPLAY_PATTERN = "matches/{teamA}-vs-{teamB}-on-{map}-{seed}.bc22";
+
+    /**
+     * Returns the number of workers to use. Unless asked for a number, that is one per match
+     * server if there are any and one per core otherwise.
+     */
+    public static int getWorkers(Args args) {
+        int workers = args.getInt("workers", 0);
+        if (workers > 0) {
+            return workers;
+        }
+        return args.has("servers") ? getServerPorts(args).size() : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static List<Integer> getServerPorts(Args args) {
+        List<Integer> ports = new ArrayList<>();
+        for (String port : args.getList("servers", "")) {
+            ports.add(Integer.parseInt(port));
+        }
+        return ports;
+    }
+
+    /**
+     * Makes the match runner described by the arguments the run tasks pass in. Matches go to the
+     * match servers on the ports in --servers if there are any, and to new engine JVMs otherwise.
+     * With --cache, matches already played with the same classes, map and engine are not played
+     * again.
+     */
+    public static MatchRunner makeRunner(Args args) throws IOException {
+        String replayPattern = args.get("replay-pattern", DEFAULT_REPLAY_PATTERN);
+        MatchRunner runner;
+        if (args.has("servers")) {
+            runner = new ServerMatchRunner(getServerPorts(args), replayPattern);
+        } else {
+            runner = new EngineProcessRunner(args.require("engine-classpath"),
+                    replayPattern,
+                    new File(args.get("log-dir", "build/match-logs")),
+                    args.get("heap", "1g"),
+                    args.getInt("timeout", 900));
+        }
+        if (args.has("cache")) {
+            runner = new CachingMatchRunner(runner, new File(args.require("cache")),
+                    new File(args.get("map-path", "maps")), new File(args.get("version-file", "version.txt")));
+        }
+        return runner;
+    }
+
+    /**
+     * Returns the matches for every pair in --pairs (like bot4:buckSmow), map in --maps and seed
+     * in --seeds.
+     */
+    public static List<Match> getMatches(Args args) {
+        String classLocationA = args.require("class-location-a");
+        String classLocationB = args.get("class-location-b", classLocationA);
+        List<Match> matches = new ArrayList<>();
+        for (String pair : args.getList("pairs", "")) {
+            String[] teams = pair.split(":");
+            if (teams.length != 2) {
+                throw new IllegalArgumentException("Expected a pair like bot4:buckSmow but got " + pair);
+            }
+            for (String map : args.getList("maps", "")) {
+                for (String seed : args.getList("seeds", "1")) {
+                    matches.add(new Match(teams[0], teams[1], classLocationA, classLocationB, map, Integer.parseInt(seed)));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Plays matches on a pool of worker threads. onResult is called on this thread as each
+     * match finishes, in the order they finish.
+     */
+    public static void runAll(List<Match> matches, MatchRunner runner, int workers,
+                              Consumer<MatchResult> onResult) throws InterruptedException {
+        runWhile(matches.iterator(), runner, workers, result -> {
+            onResult.accept(result);
+            return true;
+        });
+    }
+
+    /**
+     * Plays matches on a pool of worker threads, only taking the next match from the iterator
+     * when a worker is free. onResult is called on this thread as each match finishes. Once it
+     * returns false no more matches are started and the ones still playing are stopped.
+     */
+    public static void runWhile(Iterator<Match> matches, MatchRunner runner, int workers,
+                                Predicate<MatchResult> onResult) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            CompletionService<MatchResult> done = new ExecutorCompletionService<>(pool);
+            int playing = 0;
+            while (true) {
+                while (playing < workers && matches.hasNext()) {
+                    Match match = matches.next();
+                    done.submit(() -> play(runner, match));
+                    playing++;
+                }
+                if (playing == 0) {
+                    return;
+                }
+
+                MatchResult result;
+                try {
+                    result = done.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                playing--;
+                if (!onResult.test(result)) {
+                    return;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static MatchResult play(MatchRunner runner, Match match) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        try {
+            return runner.run(match);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return MatchResult.failed(match, System.currentTimeMillis() - start, "", e.toString());
+        }
+    }
+
+    /**
+     * Opens a CSV file for results and writes the header.
+     */
+    public static PrintWriter openCsv(String path, String header) throws IOException {
+        File file = new File(path).getAbsoluteFile();
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        out.println(header);
+        out.flush();
+        return out;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        List<Match> matches = getMatches(args);
+        int workers = getWorkers(args);
+        String outPath = args.get("out", "matches/batch.csv");
+        System.out.println("Playing " + matches.size() + " matches on " + workers + " workers");
+
+        // Wins of the first team of each pair, by pair
+        Map<String, int[]> tally = new TreeMap<>();
+        int[] finished = {0};
+        try (PrintWriter out = openCsv(outPath, MatchResult.CSV_HEADER)) {
+            runAll(matches, makeRunner(args), workers, result -> {
+                out.println(result.toCsvRow());
+                out.flush();
+                finished[0]++;
+                System.out.println("[" + finished[0] + "/" + matches.size() + "] " + result);
+
+                int[] score = tally.computeIfAbsent(result.match.teamA + " vs " + result.match.teamB, k -> new int[3]);
+                score[result.isError() ? 2 : "A".equals(result.winningSide) ? 0 : 1]++;
+            });
+        }
+
+        System.out.println();
+        for (Map.Entry<String, int[]> entry : tally.entrySet()) {
+            int[] score = entry.getValue();
+            System.out.println(entry.getKey() + ": " + score[0] + "-" + score[1]
+                    + (score[2] > 0 ? " (" + score[2] + " failed)" : ""));
+        }
+        System.out.println("Results written to " + outPath);
+    }
+}
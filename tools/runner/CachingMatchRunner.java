@@ -0,0 +1,199 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Remembers the results of matches so that they are only played once. The engine and our bots
+ * are deterministic, so a match is fully decided by both teams' classes, the map, the engine
+ * version and the seed, and the cache key is a hash of exactly those. Changing one bot only
+ * changes the keys of that bot's matches, so everything else is answered from the cache.
+ *
+ * Each result is a small properties file in the cache directory named after its key. Failed
+ * matches are never cached, so they are played again next time.
+ */
+public class CachingMatchRunner implements MatchRunner {
+
+    private final MatchRunner runner;
+    private final File cacheDir;
+    private final File mapDir;
+    private final byte[] version;
+
+    // Hashes of each team's classes, by class location and package, computed once per run
+    private final Map<String, byte[]> packageHashes = new ConcurrentHashMap<>();
+
+    public CachingMatchRunner(MatchRunner runner, File cacheDir, File mapDir, File versionFile) throws IOException {
+        this.runner = runner;
+        this.cacheDir = cacheDir;
+        this.mapDir = mapDir;
+        this.version = Files.readAllBytes(versionFile.toPath());
+    }
+
+    @Override
+    public MatchResult run(Match match) throws Exception {
+        String key = getKey(match);
+        File entry = new File(new File(cacheDir, key.substring(0, 2)), key);
+        if (entry.isFile()) {
+            return read(match, entry);
+        }
+
+        MatchResult result = runner.run(match);
+        if (!result.isError()) {
+            write(result, entry);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hex SHA-256 of everything that decides the outcome of the match.
+     */
+    String getKey(Match match) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, match.teamA.getBytes(StandardCharsets.UTF_8));
+        update(digest, getPackageHash(match.classLocationA, match.teamA));
+        update(digest, match.teamB.getBytes(StandardCharsets.UTF_8));
+        update(digest, getPackageHash(match.classLocationB, match.teamB));
+        update(digest, match.map.getBytes(StandardCharsets.UTF_8));
+        // Built-in maps live in the engine jar and so are covered by the version
+        File mapFile = new File(mapDir, match.map + ".map22");
+        update(digest, mapFile.isFile() ? Files.readAllBytes(mapFile.toPath()) : new byte[0]);
+        update(digest, version);
+        update(digest, Integer.toString(match.seed).getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private byte[] getPackageHash(String classLocation, String packageName) throws IOException {
+        String id = classLocation + "|" + packageName;
+        byte[] hash = packageHashes.get(id);
+        if (hash == null) {
+            hash = hashPackage(classLocation, packageName);
+            packageHashes.put(id, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes the names and bytes of every file in the package, in every directory or jar of
+     * the class location, in a fixed order.
+     */
+    static byte[] hashPackage(String classLocation, String packageName) throws IOException {
+        String packagePath = packageName.replace('.', '/') + "/";
+        MessageDigest digest = newDigest();
+        int files = 0;
+        for (String location : classLocation.split(File.pathSeparator)) {
+            File root = new File(location);
+            if (root.isDirectory()) {
+                Path packageDir = root.toPath().resolve(packagePath);
+                if (!Files.isDirectory(packageDir)) {
+                    continue;
+                }
+                List<Path> paths;
+                try (Stream<Path> walk = Files.walk(packageDir)) {
+                    paths = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path path : paths) {
+                    update(digest, packageDir.relativize(path).toString().replace(File.separatorChar, '/')
+                            .getBytes(StandardCharsets.UTF_8));
+                    update(digest, Files.readAllBytes(path));
+                    files++;
+                }
+            } else if (root.isFile()) {
+                try (JarFile jar = new JarFile(root)) {
+                    List<JarEntry> entries = new ArrayList<>();
+                    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                        JarEntry entry = e.nextElement();
+                        if (!entry.isDirectory() && entry.getName().startsWith(packagePath)) {
+                            entries.add(entry);
+                        }
+                    }
+                    entries.sort((a, b) -> a.getName().compareTo(b.getName()));
+                    for (JarEntry entry : entries) {
+                        update(digest, entry.getName().substring(packagePath.length()).getBytes(StandardCharsets.UTF_8));
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            update(digest, EngineClasses.readAll(in));
+                        }
+                        files++;
+                    }
+                }
+            }
+        }
+        if (files == 0) {
+            throw new IOException("No classes for " + packageName + " in " + classLocation);
+        }
+        return digest.digest();
+    }
+
+    private static MatchResult read(Match match, File entry) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(entry.toPath())) {
+            properties.load(in);
+        }
+        return new MatchResult(match, properties.getProperty("side"),
+                Integer.parseInt(properties.getProperty("rounds")),
+                properties.getProperty("reason", ""),
+                Long.parseLong(properties.getProperty("millis", "0")),
+                properties.getProperty("replay", ""), null);
+    }
+
+    private static void write(MatchResult result, File entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("teamA", result.match.teamA);
+        properties.setProperty("teamB", result.match.teamB);
+        properties.setProperty("map", result.match.map);
+        properties.setProperty("seed", Integer.toString(result.match.seed));
+        properties.setProperty("side", result.winningSide);
+        properties.setProperty("rounds", Integer.toString(result.rounds));
+        properties.setProperty("reason", result.reason);
+        properties.setProperty("millis", Long.toString(result.millis));
+        properties.setProperty("replay", result.replay);
+
+        // Write to a temporary file and move it so other workers never read half an entry
+        entry.getParentFile().mkdirs();
+        File temp = File.createTempFile(entry.getName(), ".tmp", entry.getParentFile());
+        try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+            properties.store(out, null);
+        }
+        Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Prefixes each part with its length so that different splits of the same bytes differ
+    private static void update(MessageDigest digest, byte[] bytes) {
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
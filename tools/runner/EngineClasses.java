@@ -0,0 +1,145 @@
+package runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The engine's classes, read once and kept in memory, from which a new class loader can be made
+ * for every match. Jars on the classpath are cached since they don't change while we run.
+ * Directories, like build/classes, are read again each time so rebuilt players are picked up.
+ */
+public class EngineClasses {
+
+    private final Map<String, byte[]> jarClasses = new HashMap<>();
+    // Where each file in a jar is, so the engine can still find its resources
+    private final Map<String, URL> jarResources = new HashMap<>();
+    private final File[] directories;
+
+    public EngineClasses(String classpath) throws IOException {
+        String[] entries = classpath.split(File.pathSeparator);
+        int numDirectories = 0;
+        File[] dirs = new File[entries.length];
+        for (String entry : entries) {
+            File file = new File(entry);
+            if (file.isDirectory()) {
+                dirs[numDirectories++] = file;
+            } else if (file.isFile()) {
+                readJar(file);
+            }
+        }
+        directories = new File[numDirectories];
+        System.arraycopy(dirs, 0, directories, 0, numDirectories);
+    }
+
+    private void readJar(File jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (jarResources.containsKey(name)) {
+                    // Like a classpath, the first jar with a file wins
+                    continue;
+                }
+                jarResources.put(name, new URL("jar:" + jar.toURI() + "!/" + name));
+                if (name.endsWith(".class")) {
+                    try (InputStream in = jarFile.getInputStream(entry)) {
+                        jarClasses.put(name, readAll(in));
+                    }
+                }
+            }
+        }
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public int size() {
+        return jarClasses.size();
+    }
+
+    /**
+     * Makes a class loader that loads its own copy of every engine class, so no static state is
+     * left over from an earlier match.
+     */
+    public ClassLoader newLoader() {
+        return new Loader(ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    private class Loader extends ClassLoader {
+
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            String path = name.replace('.', '/') + ".class";
+            byte[] bytes = jarClasses.get(path);
+            if (bytes == null) {
+                File file = findInDirectories(path);
+                if (file != null) {
+                    try {
+                        bytes = Files.readAllBytes(file.toPath());
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+            }
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        @Override
+        protected URL findResource(String name) {
+            File file = findInDirectories(name);
+            if (file != null) {
+                try {
+                    return file.toURI().toURL();
+                } catch (MalformedURLException e) {
+                    return null;
+                }
+            }
+            return jarResources.get(name);
+        }
+
+        @Override
+        protected Enumeration<URL> findResources(String name) {
+            URL url = findResource(name);
+            return url == null ? Collections.<URL>emptyEnumeration() : Collections.enumeration(Collections.singleton(url));
+        }
+
+        private File findInDirectories(String path) {
+            for (File dir : directories) {
+                File file = new File(dir, path);
+                if (file.isFile()) {
+                    return file;
+                }
+            }
+            return null;
+        }
+    }
+}
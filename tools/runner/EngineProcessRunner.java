@@ -0,0 +1,122 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plays each match in a new headless engine JVM, with the same settings as the run task but
+ * without the robots' output. The engine's output goes to a log file per match, which is read
+ * back for the winner.
+ */
+public class EngineProcessRunner implements MatchRunner {
+
+    // The engine prints lines like "[server] bot4 (A) wins (round 1532)"
+    private static final Pattern WINNER = Pattern.compile("\\((A|B)\\) wins \\(round (\\d+)\\)");
+    private static final Pattern REASON = Pattern.compile("Reason: (.*)");
+
+    private final String engineClasspath;
+    private final String replayPattern;
+    private final File logDir;
+    private final String heap;
+    private final long timeoutSeconds;
+
+    public EngineProcessRunner(String engineClasspath, String replayPattern, File logDir, String heap, long timeoutSeconds) {
+        this.engineClasspath = engineClasspath;
+        this.replayPattern = replayPattern;
+        this.logDir = logDir;
+        this.heap = heap;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public MatchResult run(Match match) throws IOException, InterruptedException {
+        String replay = match.fillPattern(replayPattern);
+        File replayDir = new File(replay).getAbsoluteFile().getParentFile();
+        replayDir.mkdirs();
+        logDir.mkdirs();
+        File log = new File(logDir, new File(replay).getName().replaceAll("\\.bc22$", "") + ".log");
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-Xmx" + heap);
+        command.add("-cp");
+        command.add(engineClasspath);
+        command.addAll(engineProperties(match, replay));
+        command.add("battlecode.server.Main");
+        command.add("-c=-");
+
+        long start = System.currentTimeMillis();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        try {
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+                return MatchResult.failed(match, System.currentTimeMillis() - start, replay,
+                        "timed out after " + timeoutSeconds + "s, see " + log);
+            }
+        } catch (InterruptedException e) {
+            // Nobody wants this match anymore, so don't leave the engine running
+            process.destroyForcibly();
+            throw e;
+        }
+        long millis = System.currentTimeMillis() - start;
+
+        return parseOutput(match, Files.readAllLines(log.toPath(), StandardCharsets.UTF_8), millis, replay, "see " + log);
+    }
+
+    /**
+     * Returns the system properties the engine reads its settings from.
+     */
+    static List<String> engineProperties(Match match, String replay) {
+        List<String> properties = new ArrayList<>();
+        properties.add("-Dbc.server.mode=headless");
+        properties.add("-Dbc.server.map-path=maps");
+        properties.add("-Dbc.server.robot-player-to-system-out=false");
+        properties.add("-Dbc.server.debug=false");
+        properties.add("-Dbc.engine.debug-methods=true");
+        properties.add("-Dbc.engine.show-indicators=false");
+        properties.add("-Dbc.engine.enable-profiler=false");
+        properties.add("-Dbc.game.team-a=" + match.teamA);
+        properties.add("-Dbc.game.team-b=" + match.teamB);
+        properties.add("-Dbc.game.team-a.url=" + match.classLocationA);
+        properties.add("-Dbc.game.team-b.url=" + match.classLocationB);
+        properties.add("-Dbc.game.maps=" + match.map);
+        properties.add("-Dbc.server.save-file=" + replay);
+        return properties;
+    }
+
+    /**
+     * Reads the winner, round and reason from the engine's output.
+     * @param whereToLook added to the error if there is no winner, to point at the full output
+     */
+    static MatchResult parseOutput(Match match, List<String> lines, long millis, String replay, String whereToLook) {
+        String side = null;
+        int rounds = 0;
+        String reason = "";
+        for (String line : lines) {
+            Matcher winner = WINNER.matcher(line);
+            if (winner.find()) {
+                side = winner.group(1);
+                rounds = Integer.parseInt(winner.group(2));
+            }
+            Matcher why = REASON.matcher(line);
+            if (why.find()) {
+                reason = why.group(1).trim();
+            }
+        }
+
+        if (side == null) {
+            return MatchResult.failed(match, millis, replay, "no winner in engine output, " + whereToLook);
+        }
+        return new MatchResult(match, side, rounds, reason, millis, replay, null);
+    }
+}
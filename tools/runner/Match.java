@@ -0,0 +1,52 @@
+package runner;
+
+/**
+ * One game to play: two bot packages, where their classes are, a map and a seed.
+ *
+ * The engine has no seed of its own and our bots seed their own Random, so the seed only tells
+ * repeated runs of the same matchup apart.
+ */
+public class Match {
+
+    public final String teamA;
+    public final String teamB;
+    public final String classLocationA;
+    public final String classLocationB;
+    public final String map;
+    public final int seed;
+
+    /**
+     * {team} in a class location is replaced with that team's package, for players that are
+     * each compiled into their own directory.
+     */
+    public Match(String teamA, String teamB, String classLocationA, String classLocationB, String map, int seed) {
+        this.teamA = teamA;
+        this.teamB = teamB;
+        this.classLocationA = classLocationA.replace("{team}", teamA);
+        this.classLocationB = classLocationB.replace("{team}", teamB);
+        this.map = map;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the same match with the teams on opposite sides of the map.
+     */
+    public Match swapped() {
+        return new Match(teamB, teamA, classLocationB, classLocationA, map, seed);
+    }
+
+    /**
+     * Fills in a path pattern like matches/{teamA}-vs-{teamB}-on-{map}-{seed}.bc22 for this match.
+     */
+    public String fillPattern(String pattern) {
+        return pattern.replace("{teamA}", teamA)
+                .replace("{teamB}", teamB)
+                .replace("{map}", map)
+                .replace("{seed}", Integer.toString(seed));
+    }
+
+    @Override
+    public String toString() {
+        return teamA + " vs " + teamB + " on " + map + " (seed " + seed + ")";
+    }
+}
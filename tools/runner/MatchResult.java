@@ -0,0 +1,70 @@
+package runner;
+
+/**
+ * The outcome of a match. A result with an error has no winner.
+ */
+public class MatchResult {
+
+    public static final String CSV_HEADER = "teamA,teamB,map,seed,winner,side,rounds,reason,millis,replay,error";
+
+    public final Match match;
+    // "A" or "B", or null if the match failed
+    public final String winningSide;
+    public final int rounds;
+    public final String reason;
+    public final long millis;
+    public final String replay;
+    public final String error;
+
+    public MatchResult(Match match, String winningSide, int rounds, String reason, long millis, String replay, String error) {
+        this.match = match;
+        this.winningSide = winningSide;
+        this.rounds = rounds;
+        this.reason = reason;
+        this.millis = millis;
+        this.replay = replay;
+        this.error = error;
+    }
+
+    static MatchResult failed(Match match, long millis, String replay, String error) {
+        return new MatchResult(match, null, 0, "", millis, replay, error);
+    }
+
+    public boolean isError() {
+        return winningSide == null;
+    }
+
+    /**
+     * Returns the bot package that won, or null if the match failed.
+     */
+    public String getWinner() {
+        if (isError()) {
+            return null;
+        }
+        return winningSide.equals("A") ? match.teamA : match.teamB;
+    }
+
+    public String toCsvRow() {
+        return String.join(",", csv(match.teamA), csv(match.teamB), csv(match.map), Integer.toString(match.seed),
+                csv(getWinner()), csv(winningSide), Integer.toString(rounds), csv(reason), Long.toString(millis),
+                csv(replay), csv(error));
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"").replace("\n", " ") + "\"";
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        if (isError()) {
+            return match + ": failed, " + error;
+        }
+        return match + ": " + getWinner() + " (" + winningSide + ") wins in round " + rounds;
+    }
+}
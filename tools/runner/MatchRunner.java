@@ -0,0 +1,9 @@
+package runner;
+
+/**
+ * Plays a single match. Implementations must be safe to call from several threads at once.
+ */
+public interface MatchRunner {
+
+    MatchResult run(Match match) throws Exception;
+}
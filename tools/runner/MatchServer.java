@@ -0,0 +1,212 @@
+package runner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.Permission;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A long running process that plays matches sent to it over a local socket, so a match doesn't
+ * pay for Gradle and a new JVM every time. Started by the matchServer task.
+ *
+ * The engine keeps its settings in system properties and static fields, so the server plays one
+ * match at a time, and every match gets a new class loader for the engine from classes kept in
+ * memory, so no engine state is carried from one match to the next. The JVM, the JDK's own
+ * classes and the read engine jars stay warm. Run more servers on other ports to play matches in
+ * parallel. While a match is played, System.exit only ends the match, not the server.
+ *
+ * Each request is one line of tab separated name=value fields (see {@link #encode}) with teamA,
+ * teamB, classLocationA, classLocationB, map, seed and replay. The reply is one line with side,
+ * rounds, reason, millis and error.
+ */
+public class MatchServer {
+
+    public static final int DEFAULT_PORT = 6175;
+
+    private final EngineClasses engine;
+
+    public MatchServer(EngineClasses engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Plays match in this JVM and saves its replay to replay.
+     */
+    public synchronized MatchResult play(Match match, String replay) {
+        long start = System.currentTimeMillis();
+        new File(replay).getAbsoluteFile().getParentFile().mkdirs();
+        for (String property : EngineProcessRunner.engineProperties(match, replay)) {
+            // Each property looks like -Dname=value
+            int equals = property.indexOf('=');
+            System.setProperty(property.substring(2, equals), property.substring(equals + 1));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        Thread thread = Thread.currentThread();
+        ClassLoader originalLoader = thread.getContextClassLoader();
+        try {
+            ClassLoader loader = engine.newLoader();
+            thread.setContextClassLoader(loader);
+            System.setOut(new PrintStream(output, true, "UTF-8"));
+            Method main = loader.loadClass("battlecode.server.Main").getMethod("main", String[].class);
+            ExitGuard.install();
+            main.invoke(null, (Object) new String[]{"-c=-"});
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (!(cause instanceof ExitGuard.Exit) || ((ExitGuard.Exit) cause).status != 0) {
+                return MatchResult.failed(match, System.currentTimeMillis() - start, replay, cause.toString());
+            }
+        } catch (ReflectiveOperationException | UnsupportedEncodingException e) {
+            return MatchResult.failed(match, System.currentTimeMillis() - start, replay, e.toString());
+        } finally {
+            ExitGuard.uninstall();
+            System.setOut(originalOut);
+            thread.setContextClassLoader(originalLoader);
+        }
+
+        List<String> lines = Arrays.asList(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n"));
+        return EngineProcessRunner.parseOutput(match, lines, System.currentTimeMillis() - start, replay,
+                "engine said: " + String.join(" / ", lines.subList(Math.max(0, lines.size() - 3), lines.size())));
+    }
+
+    /**
+     * A security manager that allows everything except System.exit, which it turns into an
+     * {@link Exit} thrown at the caller. JVMs that no longer allow a security manager to be
+     * installed just play without it.
+     */
+    static final class ExitGuard extends SecurityManager {
+
+        static final class Exit extends SecurityException {
+            final int status;
+
+            Exit(int status) {
+                super("System.exit(" + status + ")");
+                this.status = status;
+            }
+        }
+
+        static void install() {
+            try {
+                System.setSecurityManager(new ExitGuard());
+            } catch (UnsupportedOperationException e) {
+                // Newer JVMs refuse unless started with -Djava.security.manager=allow
+            }
+        }
+
+        static void uninstall() {
+            if (System.getSecurityManager() instanceof ExitGuard) {
+                System.setSecurityManager(null);
+            }
+        }
+
+        @Override
+        public void checkExit(int status) {
+            throw new Exit(status);
+        }
+
+        @Override
+        public void checkPermission(Permission permission) {
+        }
+
+        @Override
+        public void checkPermission(Permission permission, Object context) {
+        }
+    }
+
+    /**
+     * Answers requests from one client until it disconnects.
+     */
+    private void serve(Socket socket) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Map<String, String> request = decode(line);
+                Match match = new Match(request.get("teamA"), request.get("teamB"),
+                        request.get("classLocationA"), request.get("classLocationB"),
+                        request.get("map"), Integer.parseInt(request.get("seed")));
+                MatchResult result = play(match, request.get("replay"));
+                System.out.println(result + " in " + result.millis + "ms");
+                out.println(encode(encodeResult(result)));
+            }
+        }
+    }
+
+    static Map<String, String> encodeResult(MatchResult result) {
+        Map<String, String> reply = new HashMap<>();
+        reply.put("side", result.winningSide == null ? "" : result.winningSide);
+        reply.put("rounds", Integer.toString(result.rounds));
+        reply.put("reason", result.reason);
+        reply.put("millis", Long.toString(result.millis));
+        reply.put("error", result.error == null ? "" : result.error);
+        return reply;
+    }
+
+    static MatchResult decodeResult(Match match, String replay, Map<String, String> reply) {
+        String side = reply.get("side");
+        String error = reply.get("error");
+        return new MatchResult(match, side.isEmpty() ? null : side, Integer.parseInt(reply.get("rounds")),
+                reply.get("reason"), Long.parseLong(reply.get("millis")), replay, error.isEmpty() ? null : error);
+    }
+
+    /**
+     * Joins fields into one line. Tabs and line breaks in values are replaced by spaces.
+     */
+    static String encode(Map<String, String> fields) {
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            String value = field.getValue() == null ? "" : field.getValue();
+            line.append(field.getKey()).append('=').append(value.replaceAll("[\t\r\n]", " "));
+        }
+        return line.toString();
+    }
+
+    static Map<String, String> decode(String line) {
+        Map<String, String> fields = new HashMap<>();
+        for (String field : line.split("\t")) {
+            int equals = field.indexOf('=');
+            if (equals != -1) {
+                fields.put(field.substring(0, equals), field.substring(equals + 1));
+            }
+        }
+        return fields;
+    }
+
+    public static void main(String[] argv) throws IOException {
+        Args args = new Args(argv);
+        int port = args.getInt("port", DEFAULT_PORT);
+        EngineClasses engine = new EngineClasses(args.require("engine-classpath"));
+        MatchServer server = new MatchServer(engine);
+
+        try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Match server with " + engine.size() + " engine classes listening on port " + port);
+            while (true) {
+                try (Socket client = socket.accept()) {
+                    server.serve(client);
+                } catch (IOException e) {
+                    System.out.println("Lost a client: " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package runner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bradley-Terry ratings of players from their wins and losses against each other, on the Elo
+ * scale (a 400 point gap means 10 to 1 odds). Results can be added at any time and the ratings
+ * refit, starting from the last fit so that it only takes a few iterations.
+ *
+ * Every pair of players gets one extra virtual game split evenly between them. Without it a
+ * player that has won or lost every game so far would have an infinite rating.
+ */
+public class Ratings {
+
+    static final double PRIOR_GAMES = 1;
+    static final double ELO_PER_NATURAL_UNIT = 400 / Math.log(10);
+    // z value for 95% confidence intervals
+    static final double Z_95 = 1.96;
+
+    private final List<String> players;
+    private final Map<String, Integer> indices = new LinkedHashMap<>();
+    // wins[i][j] is how many times player i beat player j
+    private final double[][] wins;
+    private final double[] strengths;
+
+    public Ratings(List<String> players) {
+        this.players = new ArrayList<>(players);
+        for (int i = 0; i < players.size(); i++) {
+            indices.put(players.get(i), i);
+        }
+        int n = players.size();
+        wins = new double[n][n];
+        strengths = new double[n];
+        for (int i = 0; i < n; i++) {
+            strengths[i] = 1;
+            for (int j = 0; j < n; j++) {
+                wins[i][j] = i == j ? 0 : PRIOR_GAMES / 2;
+            }
+        }
+    }
+
+    public void addResult(String winner, String loser) {
+        wins[indices.get(winner)][indices.get(loser)]++;
+    }
+
+    /**
+     * Refits the ratings with minorization-maximization until they stop changing.
+     */
+    public void fit() {
+        int n = players.size();
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            double maxChange = 0;
+            for (int i = 0; i < n; i++) {
+                double totalWins = 0;
+                double denominator = 0;
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        totalWins += wins[i][j];
+                        denominator += (wins[i][j] + wins[j][i]) / (strengths[i] + strengths[j]);
+                    }
+                }
+                double updated = denominator > 0 ? totalWins / denominator : strengths[i];
+                maxChange = Math.max(maxChange, Math.abs(Math.log(updated / strengths[i])));
+                strengths[i] = updated;
+            }
+            normalize();
+            if (maxChange < 1e-9) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Scales the strengths so that the average rating is 0.
+     */
+    private void normalize() {
+        double logSum = 0;
+        for (double strength : strengths) {
+            logSum += Math.log(strength);
+        }
+        double scale = Math.exp(logSum / strengths.length);
+        for (int i = 0; i < strengths.length; i++) {
+            strengths[i] /= scale;
+        }
+    }
+
+    public double getElo(String player) {
+        return ELO_PER_NATURAL_UNIT * Math.log(strengths[indices.get(player)]);
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of player's rating. It comes from the
+     * curvature of the likelihood in player's own rating, holding the others fixed, which is
+     * a little optimistic but good enough to tell apart close ratings from clear ones.
+     */
+    public double getElo95(String player) {
+        int i = indices.get(player);
+        double information = 0;
+        for (int j = 0; j < players.size(); j++) {
+            if (i != j) {
+                double p = strengths[i] / (strengths[i] + strengths[j]);
+                information += (wins[i][j] + wins[j][i]) * p * (1 - p);
+            }
+        }
+        return Z_95 * ELO_PER_NATURAL_UNIT / Math.sqrt(information);
+    }
+
+    /**
+     * Returns the real games player won and lost, leaving out the virtual ones.
+     */
+    public int[] getRecord(String player) {
+        int i = indices.get(player);
+        double won = 0;
+        double lost = 0;
+        for (int j = 0; j < players.size(); j++) {
+            if (i != j) {
+                won += wins[i][j] - PRIOR_GAMES / 2;
+                lost += wins[j][i] - PRIOR_GAMES / 2;
+            }
+        }
+        return new int[]{(int) Math.round(won), (int) Math.round(lost)};
+    }
+
+    /**
+     * Returns a table of the players from best to worst.
+     */
+    public String getLeaderboard() {
+        List<String> ranked = new ArrayList<>(players);
+        ranked.sort(Comparator.comparingDouble(this::getElo).reversed());
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-4s %-20s %6s %8s %6s %6s%n", "Rank", "Player", "Elo", "95% CI", "Won", "Lost"));
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            String player = ranked.get(rank);
+            int[] record = getRecord(player);
+            table.append(String.format("%-4d %-20s %+6d %8s %6d %6d%n", rank + 1, player, Math.round(getElo(player)),
+                    "+-" + Math.round(getElo95(player)), record[0], record[1]));
+        }
+        return table.toString();
+    }
+}
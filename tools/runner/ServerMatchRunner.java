@@ -0,0 +1,77 @@
+package runner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Plays matches on running {@link MatchServer}s. Each match takes whichever server is free, so
+ * use as many workers as there are servers.
+ */
+public class ServerMatchRunner implements MatchRunner {
+
+    private final BlockingQueue<Integer> freePorts;
+    private final String replayPattern;
+
+    public ServerMatchRunner(List<Integer> ports, String replayPattern) {
+        freePorts = new ArrayBlockingQueue<>(ports.size(), false, ports);
+        this.replayPattern = replayPattern;
+    }
+
+    @Override
+    public MatchResult run(Match match) throws IOException, InterruptedException {
+        // The server may be running somewhere else, so it gets an absolute path
+        String replay = new File(match.fillPattern(replayPattern)).getAbsolutePath();
+        Map<String, String> request = new HashMap<>();
+        request.put("teamA", match.teamA);
+        request.put("teamB", match.teamB);
+        request.put("classLocationA", new File(match.classLocationA).getAbsolutePath());
+        request.put("classLocationB", new File(match.classLocationB).getAbsolutePath());
+        request.put("map", match.map);
+        request.put("seed", Integer.toString(match.seed));
+        request.put("replay", replay);
+
+        int port = freePorts.take();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            out.println(MatchServer.encode(request));
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Match server on port " + port + " closed the connection");
+            }
+            return MatchServer.decodeResult(match, replay, MatchServer.decode(reply));
+        } finally {
+            freePorts.put(port);
+        }
+    }
+
+    /**
+     * Plays one match on a server and prints the result, for quick checks from the command line:
+     *   java -cp build/tools runner.ServerMatchRunner --team-a=bot4 --team-b=bot3 --map=eckleburg
+     *   --class-location-a=build/classes
+     */
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        String classLocationA = args.get("class-location-a", "build/classes");
+        Match match = new Match(args.require("team-a"), args.require("team-b"), classLocationA,
+                args.get("class-location-b", classLocationA), args.require("map"), args.getInt("seed", 1));
+        ServerMatchRunner runner = new ServerMatchRunner(
+                Collections.singletonList(args.getInt("port", MatchServer.DEFAULT_PORT)),
+                args.get("replay-pattern", BatchRunner.DEFAULT_REPLAY_PATTERN));
+        MatchResult result = runner.run(match);
+        System.out.println(result + " in " + result.millis + "ms");
+    }
+}
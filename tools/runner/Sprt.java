@@ -0,0 +1,93 @@
+package runner;
+
+/**
+ * A sequential probability ratio test on wins and losses. It decides between H0, the candidate
+ * is elo0 stronger than the baseline, and H1, it is elo1 stronger, as soon as the games so far
+ * are enough to do so with false positive rate alpha and false negative rate beta.
+ */
+public class Sprt {
+
+    public enum Decision { H0, H1, CONTINUE }
+
+    private final double winLlr;
+    private final double lossLlr;
+    private final double lowerBound;
+    private final double upperBound;
+
+    private int wins = 0;
+    private int losses = 0;
+
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) {
+            throw new IllegalArgumentException("elo1 must be greater than elo0");
+        }
+        double p0 = getWinProbability(elo0);
+        double p1 = getWinProbability(elo1);
+        winLlr = Math.log(p1 / p0);
+        lossLlr = Math.log((1 - p1) / (1 - p0));
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Returns the chance of winning a game with the given Elo advantage.
+     */
+    static double getWinProbability(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    public void addResult(boolean candidateWon) {
+        if (candidateWon) {
+            wins++;
+        } else {
+            losses++;
+        }
+    }
+
+    /**
+     * Returns the log likelihood ratio of H1 against H0 given the games so far.
+     */
+    public double getLlr() {
+        return wins * winLlr + losses * lossLlr;
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    public Decision getDecision() {
+        double llr = getLlr();
+        if (llr >= upperBound) {
+            return Decision.H1;
+        }
+        if (llr <= lowerBound) {
+            return Decision.H0;
+        }
+        return Decision.CONTINUE;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    /**
+     * Returns the Elo difference that the score so far points to, capped at +-800 when one side
+     * has won every game.
+     */
+    public double getEloEstimate() {
+        int games = wins + losses;
+        if (games == 0) {
+            return 0;
+        }
+        double score = Math.min(Math.max((double) wins / games, 0.01), 0.99);
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
@@ -0,0 +1,87 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays every pair of players against each other on every map, once from each side so that
+ * neither gets the better spawn every time, and ranks the players with {@link Ratings}. The
+ * leaderboard is rewritten after every match, so a run that is stopped early still says
+ * something. Started by the tournament task.
+ */
+public class Tournament {
+
+    /**
+     * Returns both sides of every pairing of players on every map and seed.
+     */
+    static List<Match> getMatches(List<String> players, List<String> maps, List<String> seeds, String classLocation) {
+        List<Match> matches = new ArrayList<>();
+        for (String map : maps) {
+            for (String seed : seeds) {
+                for (int i = 0; i < players.size(); i++) {
+                    for (int j = i + 1; j < players.size(); j++) {
+                        Match match = new Match(players.get(i), players.get(j), classLocation, classLocation,
+                                map, Integer.parseInt(seed));
+                        matches.add(match);
+                        matches.add(match.swapped());
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    static void writeLeaderboard(String path, String header, Ratings ratings) throws IOException {
+        File file = new File(path).getAbsoluteFile();
+        file.getParentFile().mkdirs();
+        String text = header + System.lineSeparator() + System.lineSeparator() + ratings.getLeaderboard();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        List<String> players = args.getList("players", "");
+        List<Match> matches = getMatches(players, args.getList("maps", ""), args.getList("seeds", "1"),
+                args.require("class-location"));
+        int workers = BatchRunner.getWorkers(args);
+        String outPath = args.get("out", "matches/tournament.csv");
+        String leaderboardPath = args.get("leaderboard", "matches/leaderboard.txt");
+        System.out.println("Playing " + matches.size() + " matches between " + players.size() + " players on "
+                + workers + " workers");
+
+        Ratings ratings = new Ratings(players);
+        int[] finished = {0};
+        int[] failed = {0};
+        try (PrintWriter out = BatchRunner.openCsv(outPath, MatchResult.CSV_HEADER)) {
+            BatchRunner.runAll(matches, BatchRunner.makeRunner(args), workers, result -> {
+                out.println(result.toCsvRow());
+                out.flush();
+                finished[0]++;
+                System.out.println("[" + finished[0] + "/" + matches.size() + "] " + result);
+
+                if (result.isError()) {
+                    failed[0]++;
+                    return;
+                }
+                String winner = result.getWinner();
+                ratings.addResult(winner, winner.equals(result.match.teamA) ? result.match.teamB : result.match.teamA);
+                ratings.fit();
+                try {
+                    writeLeaderboard(leaderboardPath, "After " + finished[0] + " of " + matches.size() + " matches"
+                            + (failed[0] > 0 ? " (" + failed[0] + " failed)" : ""), ratings);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        System.out.println();
+        System.out.print(ratings.getLeaderboard());
+        System.out.println("Results written to " + outPath + " and " + leaderboardPath);
+    }
+}
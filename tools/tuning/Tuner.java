@@ -0,0 +1,306 @@
+package tuning;
+
+import runner.Args;
+import runner.BatchRunner;
+import runner.Match;
+import runner.MatchResult;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tunes a player's constants. Each setting of the constants to try becomes its own copy of the
+ * player's package, written with the new values into the build directory and compiled there.
+ * Every variant then plays each opponent in the pool on each map from both sides, and the
+ * variants are ranked by their score. Started by the tune task.
+ */
+public class Tuner {
+
+    /**
+     * One setting of the constants, played as its own package.
+     */
+    static class Variant {
+        final String packageName;
+        final Map<String, Integer> values;
+        int wins = 0;
+        int games = 0;
+
+        Variant(String packageName, Map<String, Integer> values) {
+            this.packageName = packageName;
+            this.values = values;
+        }
+
+        double getScore() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        /**
+         * Returns the Elo difference against the pool and the half width of its 95% confidence
+         * interval, from the normal approximation of the score.
+         */
+        double[] getElo() {
+            double score = Math.min(Math.max(getScore(), 0.01), 0.99);
+            double error = 1.96 * Math.sqrt(score * (1 - score) / Math.max(games, 1));
+            double elo = toElo(score);
+            double high = toElo(Math.min(score + error, 0.99));
+            double low = toElo(Math.max(score - error, 0.01));
+            return new double[]{elo, (high - low) / 2};
+        }
+
+        private static double toElo(double score) {
+            return -400 * Math.log10(1 / score - 1);
+        }
+    }
+
+    /**
+     * Reads the values to try for each constant from a properties file.
+     */
+    static Map<String, List<Integer>> readGrid(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        Map<String, List<Integer>> grid = new LinkedHashMap<>();
+        for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+            List<Integer> values = new ArrayList<>();
+            for (String value : properties.getProperty(name).split(",")) {
+                values.add(Integer.parseInt(value.trim()));
+            }
+            grid.put(name, values);
+        }
+        return grid;
+    }
+
+    /**
+     * Returns every combination of values in grid, or samples of them picked at random if
+     * samples is positive and smaller than the grid.
+     */
+    static List<Map<String, Integer>> getSettings(Map<String, List<Integer>> grid, int samples, long seed) {
+        long total = 1;
+        for (List<Integer> values : grid.values()) {
+            total *= values.size();
+        }
+
+        List<Long> picks = new ArrayList<>();
+        if (samples <= 0 || samples >= total) {
+            for (long i = 0; i < total; i++) {
+                picks.add(i);
+            }
+        } else {
+            Random rng = new Random(seed);
+            Set<Long> picked = new LinkedHashSet<>();
+            while (picked.size() < samples) {
+                picked.add((long) (rng.nextDouble() * total));
+            }
+            picks.addAll(picked);
+        }
+
+        List<Map<String, Integer>> settings = new ArrayList<>();
+        for (long pick : picks) {
+            Map<String, Integer> setting = new LinkedHashMap<>();
+            long rest = pick;
+            for (Map.Entry<String, List<Integer>> entry : grid.entrySet()) {
+                List<Integer> values = entry.getValue();
+                setting.put(entry.getKey(), values.get((int) (rest % values.size())));
+                rest /= values.size();
+            }
+            settings.add(setting);
+        }
+        return settings;
+    }
+
+    /**
+     * Reads the current value of each constant in the grid from the player's sources. Constants
+     * that nothing reads are rejected, as tuning them would only spend matches on noise.
+     */
+    static Map<String, Integer> readBaseline(File sourceDir, Set<String> names) throws IOException {
+        Map<String, Integer> baseline = new LinkedHashMap<>();
+        Map<String, Integer> uses = new HashMap<>();
+        for (File file : listSources(sourceDir)) {
+            String source = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            for (String name : names) {
+                Matcher matcher = constantPattern(name).matcher(source);
+                if (matcher.find()) {
+                    baseline.put(name, Integer.parseInt(matcher.group(2)));
+                }
+                Matcher use = Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(source);
+                while (use.find()) {
+                    uses.merge(name, 1, Integer::sum);
+                }
+            }
+        }
+        for (String name : names) {
+            if (!baseline.containsKey(name)) {
+                throw new IllegalArgumentException("No static final int " + name + " in " + sourceDir);
+            }
+            // The declaration is one of the uses
+            if (uses.getOrDefault(name, 0) < 2) {
+                throw new IllegalArgumentException(name + " is never read in " + sourceDir + ", so tuning it can't change anything");
+            }
+        }
+        return baseline;
+    }
+
+    private static Pattern constantPattern(String name) {
+        return Pattern.compile("(static final int " + Pattern.quote(name) + "\\s*=\\s*)(-?\\d+)(\\s*;)");
+    }
+
+    private static List<File> listSources(File sourceDir) {
+        File[] files = sourceDir.listFiles((dir, fileName) -> fileName.endsWith(".java"));
+        if (files == null || files.length == 0) {
+            throw new IllegalArgumentException("No Java sources in " + sourceDir);
+        }
+        List<File> sources = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(sources);
+        return sources;
+    }
+
+    /**
+     * Copies the player's sources into a new package with the constants set to values.
+     * @return the copied source files
+     */
+    static List<File> writeVariant(File sourceDir, String packageName, Variant variant, File outDir) throws IOException {
+        File variantDir = new File(outDir, variant.packageName);
+        variantDir.mkdirs();
+        List<File> written = new ArrayList<>();
+        for (File file : listSources(sourceDir)) {
+            String source = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            source = source.replaceFirst("package\\s+" + Pattern.quote(packageName) + "\\s*;",
+                    "package " + variant.packageName + ";");
+            for (Map.Entry<String, Integer> entry : variant.values.entrySet()) {
+                source = constantPattern(entry.getKey()).matcher(source).replaceAll("$1" + entry.getValue() + "$3");
+            }
+            File copy = new File(variantDir, file.getName());
+            Files.write(copy.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            written.add(copy);
+        }
+        return written;
+    }
+
+    /**
+     * Compiles the variants for Java 8 like the rest of our players, which the engine expects.
+     */
+    static void compile(List<File> sources, String classpath, File classesDir) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Tuning needs a JDK to compile the variants");
+        }
+        classesDir.mkdirs();
+        List<String> options = new ArrayList<>(Arrays.asList("-nowarn", "-cp", classpath, "-d", classesDir.getPath()));
+        if (System.getProperty("java.specification.version").startsWith("1.")) {
+            options.addAll(Arrays.asList("-source", "1.8", "-target", "1.8"));
+        } else {
+            options.addAll(Arrays.asList("--release", "8"));
+        }
+        for (File source : sources) {
+            options.add(source.getPath());
+        }
+        if (compiler.run(null, null, null, options.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Couldn't compile the variants");
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        String packageName = args.require("package");
+        File sourceDir = new File(args.require("source"), packageName.replace('.', '/'));
+        File workDir = new File(args.get("work-dir", "build/tuning"));
+        Map<String, List<Integer>> grid = readGrid(new File(args.require("grid")));
+
+        // The baseline goes first so that ties favor keeping what we have
+        List<Variant> variants = new ArrayList<>();
+        variants.add(new Variant(packageName + "_base", readBaseline(sourceDir, grid.keySet())));
+        for (Map<String, Integer> setting : getSettings(grid, args.getInt("samples", 0), args.getInt("seed", 6147))) {
+            if (!setting.equals(variants.get(0).values)) {
+                variants.add(new Variant(packageName + "_v" + variants.size(), setting));
+            }
+        }
+
+        List<File> sources = new ArrayList<>();
+        for (Variant variant : variants) {
+            sources.addAll(writeVariant(sourceDir, packageName, variant, new File(workDir, "src")));
+        }
+        File classesDir = new File(workDir, "classes");
+        System.out.println("Compiling " + variants.size() + " variants of " + packageName);
+        compile(sources, args.require("engine-classpath"), classesDir);
+
+        List<Match> matches = new ArrayList<>();
+        Map<String, Variant> byPackage = new LinkedHashMap<>();
+        for (Variant variant : variants) {
+            byPackage.put(variant.packageName, variant);
+            for (String opponent : args.getList("opponents", "")) {
+                for (String map : args.getList("maps", "")) {
+                    Match match = new Match(variant.packageName, opponent, classesDir.getPath(),
+                            args.require("class-location"), map, 1);
+                    matches.add(match);
+                    matches.add(match.swapped());
+                }
+            }
+        }
+
+        int workers = BatchRunner.getWorkers(args);
+        System.out.println("Playing " + matches.size() + " matches on " + workers + " workers");
+        int[] finished = {0};
+        try (PrintWriter out = BatchRunner.openCsv(new File(workDir, "results.csv").getPath(), MatchResult.CSV_HEADER)) {
+            BatchRunner.runAll(matches, BatchRunner.makeRunner(args), workers, result -> {
+                out.println(result.toCsvRow());
+                out.flush();
+                finished[0]++;
+                System.out.println("[" + finished[0] + "/" + matches.size() + "] " + result);
+                if (result.isError()) {
+                    return;
+                }
+                Variant variant = byPackage.containsKey(result.match.teamA)
+                        ? byPackage.get(result.match.teamA) : byPackage.get(result.match.teamB);
+                variant.games++;
+                if (variant.packageName.equals(result.getWinner())) {
+                    variant.wins++;
+                }
+            });
+        }
+
+        List<Variant> ranked = new ArrayList<>(variants);
+        ranked.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-16s %6s %6s %8s  %s%n", "Variant", "Score", "Elo", "95% CI", "Constants"));
+        for (Variant variant : ranked) {
+            double[] elo = variant.getElo();
+            report.append(String.format("%-16s %5.1f%% %+6d %8s  %s%n", variant.packageName.substring(packageName.length() + 1),
+                    variant.getScore() * 100, Math.round(elo[0]), "+-" + Math.round(elo[1]), variant.values));
+        }
+        Variant best = ranked.get(0);
+        Variant baseline = variants.get(0);
+        report.append(String.format("%nBest: %s, %+d Elo against the pool compared to %+d for the baseline%n",
+                best.values, Math.round(best.getElo()[0]), Math.round(baseline.getElo()[0])));
+        if (best != baseline && best.getElo()[0] - best.getElo()[1] <= baseline.getElo()[0] + baseline.getElo()[1]) {
+            report.append("The confidence intervals of the best variant and the baseline overlap, so play more maps to be sure.\n");
+        }
+
+        File reportFile = new File(workDir, "report.txt");
+        Files.write(reportFile.toPath(), report.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println();
+        System.out.print(report);
+        System.out.println("Report written to " + reportFile);
+    }
+}